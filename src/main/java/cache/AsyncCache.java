@@ -0,0 +1,157 @@
+package cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * CompletableFuture view of a SimpleCache: hits complete in the caller thread, loads and writes
+ * run on the executor, and concurrent misses on a key share a single load.
+ * @param <K>: Key type
+ * @param <V>: Value type
+ */
+public class AsyncCache<K, V>
+{
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncCache.class);
+
+    private final SimpleCache<K, V> cache;
+
+    private final Executor executor;
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+
+    /**
+     * Loads and writes on virtual threads when the runtime has them, otherwise on daemon threads
+     */
+    public AsyncCache(SimpleCache<K, V> cache)
+    {
+        this(cache, DefaultExecutor.INSTANCE);
+    }
+
+    public AsyncCache(SimpleCache<K, V> cache, Executor executor)
+    {
+        if (cache == null || executor == null)
+            throw new NullPointerException("cache and executor can not be null");
+
+        this.cache = cache;
+        this.executor = executor;
+    }
+
+    public SimpleCache<K, V> getCache()
+    {
+        return cache;
+    }
+
+    /**
+     * @return the value, loaded on the executor on a miss of a read-through cache, null if absent
+     */
+    public CompletableFuture<V> getAsync(K key)
+    {
+        V value = cache.getIfPresent(key);
+        if (value != null || !cache.isReadThrough())
+            return CompletableFuture.completedFuture(value);
+
+        CompletableFuture<V> load = loading.get(key);
+        if (load == null)
+        {
+            CompletableFuture<V> created = new CompletableFuture<>();
+            load = loading.putIfAbsent(key, created);
+            if (load == null)
+            {
+                load = created;
+                try
+                {
+                    executor.execute(() -> load(key, created));
+                }
+                catch (RuntimeException e)
+                {
+                    loading.remove(key, created);
+                    created.completeExceptionally(e);
+                }
+            }
+        }
+        // callers cancelling or completing their future do not affect the others
+        return load.thenApply((loaded) -> loaded);
+    }
+
+    /**
+     * @return the values of the keys present or loaded, absent keys are left out
+     */
+    public CompletableFuture<Map<K, V>> getAllAsync(Set<? extends K> keys)
+    {
+        Map<K, CompletableFuture<V>> futures = new HashMap<>();
+        for (K key : keys)
+            futures.put(key, getAsync(key));
+
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0]))
+                .thenApply((done) -> {
+                    Map<K, V> values = new HashMap<>();
+                    futures.forEach((key, future) -> {
+                        V value = future.join();
+                        if (value != null)
+                            values.put(key, value);
+                    });
+                    return values;
+                });
+    }
+
+    /**
+     * Put on the executor, where a write-through cache calls its CacheWriter
+     */
+    public CompletableFuture<Void> putAsync(K key, V value)
+    {
+        return CompletableFuture.runAsync(() -> cache.put(key, value), executor);
+    }
+
+    private void load(K key, CompletableFuture<V> load)
+    {
+        try
+        {
+            load.complete(cache.loadMissing(key));
+        }
+        catch (Throwable e)
+        {
+            load.completeExceptionally(e);
+        }
+        finally
+        {
+            loading.remove(key, load);
+        }
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor is looked up by reflection: the build targets 1.8
+     */
+    private static final class DefaultExecutor
+    {
+        private static final Executor INSTANCE = create();
+
+        private static Executor create()
+        {
+            try
+            {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            }
+            catch (ReflectiveOperationException | RuntimeException e)
+            {
+                LOG.debug("virtual threads are not available, loading on platform threads");
+            }
+
+            AtomicInteger threadCount = new AtomicInteger();
+            return Executors.newCachedThreadPool((runnable) -> {
+                Thread thread = new Thread(runnable, "async-cache-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent Bloom filter over key hash codes: mightContain never returns false for an added key,
+ * and returns true for an absent key with about the configured false positive rate.
+ * @param <K>: Key type
+ */
+public class BloomFilter<K>
+{
+    private final AtomicLongArray bits;
+
+    private final long bitCount;
+
+    private final int hashCount;
+
+    public BloomFilter(long expectedInsertions, double falsePositiveRate)
+    {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1)
+            throw new IllegalArgumentException("falsePositiveRate should be in (0, 1): " + falsePositiveRate);
+
+        long n = Math.max(1, expectedInsertions);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (m + 63) >>> 6));
+
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words << 6;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+    }
+
+    public void add(K key)
+    {
+        long hash = mix(key.hashCode());
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++)
+        {
+            long bit = index(h1 + i * h2);
+            long mask = 1L << bit;
+            int word = (int) (bit >>> 6);
+            if ((bits.get(word) & mask) == 0)
+                bits.accumulateAndGet(word, mask, (current, m) -> current | m);
+        }
+    }
+
+    public boolean mightContain(K key)
+    {
+        long hash = mix(key.hashCode());
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++)
+        {
+            long bit = index(h1 + i * h2);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    private long index(int combined)
+    {
+        return (combined & Integer.MAX_VALUE) % bitCount;
+    }
+
+    /**
+     * Murmur3 finalizer, spreads weak hash codes over 64 bits
+     */
+    private static long mix(int hashCode)
+    {
+        long h = hashCode;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,77 @@
+package cache;
+
+import javax.cache.Cache;
+
+/**
+ * Typed reference to a cache of a manager, for callers looking the same cache up on every request:
+ * the name and types are checked once, then get() is a single volatile read until the cache is
+ * closed or destroyed, after which the next get() looks it up again.
+ * @param <K>: Key type
+ * @param <V>: Value type
+ */
+public final class CacheHandle<K, V>
+{
+    private final SimpleCacheManager manager;
+
+    private final String cacheName;
+
+    private final Class<K> keyType;
+
+    private final Class<V> valueType;
+
+    private volatile Cache<K, V> cache;
+
+    CacheHandle(SimpleCacheManager manager, String cacheName, Class<K> keyType, Class<V> valueType)
+    {
+        this.manager = manager;
+        this.cacheName = cacheName;
+        this.keyType = keyType;
+        this.valueType = valueType;
+    }
+
+    /**
+     * @return the cache, null if the manager has no cache of this name
+     * @throws ClassCastException if the cache has other types, as CacheManager.getCache
+     */
+    public Cache<K, V> get()
+    {
+        Cache<K, V> current = cache;
+        return current != null ? current : resolve();
+    }
+
+    public String getCacheName()
+    {
+        return cacheName;
+    }
+
+    public Class<K> getKeyType()
+    {
+        return keyType;
+    }
+
+    public Class<V> getValueType()
+    {
+        return valueType;
+    }
+
+    /**
+     * Called by the manager when the cache is released
+     */
+    void reset()
+    {
+        cache = null;
+    }
+
+    private Cache<K, V> resolve()
+    {
+        Cache<K, V> resolved = manager.getCache(cacheName, keyType, valueType);
+        if (resolved == null)
+            return null;
+
+        cache = resolved;
+        // the manager releases a cache after closing it: closed now means it may have missed the reset
+        if (resolved.isClosed())
+            cache = null;
+        return resolved;
+    }
+}
@@ -0,0 +1,82 @@
+package cache;
+
+import store.value.ValueHolder;
+
+import javax.cache.Cache;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Adapts a store spliterator to cache entries, skipping holders whose value
+ * is gone (e.g. collected weak references) or which are not live any more
+ * (e.g. invalidated tags). Splitting is delegated to the store.
+ */
+class EntrySpliterator<K, V> implements Spliterator<Cache.Entry<K, V>>
+{
+    private final Spliterator<Map.Entry<K, ValueHolder<V>>> delegate;
+
+    private final Predicate<ValueHolder<V>> live;
+
+    EntrySpliterator(Spliterator<Map.Entry<K, ValueHolder<V>>> delegate, Predicate<ValueHolder<V>> live)
+    {
+        this.delegate = delegate;
+        this.live = live;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Cache.Entry<K, V>> action)
+    {
+        Object[] next = new Object[2];
+        while (delegate.tryAdvance((entry) -> {
+            ValueHolder<V> holder = entry.getValue();
+            next[0] = entry.getKey();
+            next[1] = holder == null || !live.test(holder) ? null : holder.value();
+        }))
+        {
+            if (next[1] != null)
+            {
+                action.accept(entry(next));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Cache.Entry<K, V>> action)
+    {
+        delegate.forEachRemaining((entry) -> {
+            ValueHolder<V> holder = entry.getValue();
+            V value = holder == null || !live.test(holder) ? null : holder.value();
+            if (value != null)
+                action.accept(new SimpleCacheEntry<>(entry.getKey(), value));
+        });
+    }
+
+    @Override
+    public Spliterator<Cache.Entry<K, V>> trySplit()
+    {
+        Spliterator<Map.Entry<K, ValueHolder<V>>> split = delegate.trySplit();
+        return split == null ? null : new EntrySpliterator<>(split, live);
+    }
+
+    @Override
+    public long estimateSize()
+    {
+        return delegate.estimateSize();
+    }
+
+    @Override
+    public int characteristics()
+    {
+        return (delegate.characteristics() & ~(SIZED | SUBSIZED | SORTED)) | NONNULL;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Cache.Entry<K, V> entry(Object[] next)
+    {
+        return new SimpleCacheEntry<>((K) next[0], (V) next[1]);
+    }
+}
@@ -0,0 +1,149 @@
+package cache;
+
+import cache.stats.HotKey;
+import cache.stats.HotKeySampler;
+import store.value.ValueHolder;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Per-thread direct-mapped copy of the hottest keys, in front of the store.
+ * A hit is a thread-local array lookup plus a volatile read, with no shared writes.
+ *
+ * Only keys of the hot set (the top keys of the sampler) are replicated. Any write of a hot key,
+ * and any change of the hot set, bumps a global epoch which invalidates every replicated slot.
+ * Readers capture the epoch before reading the store, so a slot filled concurrently with a write
+ * is born stale.
+ * @param <K>: Key type
+ * @param <V>: Value type
+ */
+class HotKeyReplica<K, V>
+{
+    private static final long HOT_SET_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicLongFieldUpdater<HotKeyReplica> EPOCH =
+            AtomicLongFieldUpdater.newUpdater(HotKeyReplica.class, "epoch");
+
+    private final HotKeySampler<K> sampler;
+
+    private final int hotSetSize;
+
+    private final int mask;
+
+    private final ThreadLocal<Slot<K, V>[]> slots;
+
+    private volatile long epoch;
+
+    private volatile Set<K> hotKeys = Collections.emptySet();
+
+    private final AtomicLong nextHotSetRefresh = new AtomicLong(System.nanoTime() + HOT_SET_REFRESH_NANOS);
+
+    @SuppressWarnings("unchecked")
+    HotKeyReplica(HotKeySampler<K> sampler, int hotSetSize)
+    {
+        this.sampler = sampler;
+        this.hotSetSize = hotSetSize;
+
+        // a few slots per hot key keep collisions of the direct mapping rare
+        int size = 4;
+        while (size < hotSetSize * 4)
+            size <<= 1;
+        this.mask = size - 1;
+        int tableSize = size;
+        this.slots = ThreadLocal.withInitial(() -> (Slot<K, V>[]) new Slot[tableSize]);
+    }
+
+    /**
+     * @return the replicated holder, or null if the key is not replicated in this thread or stale
+     */
+    ValueHolder<V> get(K key)
+    {
+        Slot<K, V> slot = slots.get()[index(key)];
+        if (slot != null && slot.epoch == epoch && slot.key.equals(key))
+            return slot.valueHolder;
+        return null;
+    }
+
+    /**
+     * Read before the store, and passed back to fill
+     */
+    long epoch()
+    {
+        return epoch;
+    }
+
+    /**
+     * Replicate a value read from the store, if the key is hot
+     * @param epoch epoch captured before reading the store
+     */
+    void fill(K key, ValueHolder<V> valueHolder, long epoch)
+    {
+        if (hotKeys.contains(key))
+            slots.get()[index(key)] = new Slot<>(key, valueHolder, epoch);
+        else if (System.nanoTime() - nextHotSetRefresh.get() >= 0)
+            refreshHotSet();
+    }
+
+    /**
+     * Called after any write of a key to the store
+     */
+    void invalidate(K key)
+    {
+        if (hotKeys.contains(key))
+            EPOCH.incrementAndGet(this);
+    }
+
+    void invalidateAll()
+    {
+        EPOCH.incrementAndGet(this);
+    }
+
+    private void refreshHotSet()
+    {
+        long next = nextHotSetRefresh.get();
+        long now = System.nanoTime();
+        if (now - next < 0 || !nextHotSetRefresh.compareAndSet(next, now + HOT_SET_REFRESH_NANOS))
+            return;
+
+        List<HotKey<K>> top = sampler.getHotKeys();
+        Set<K> refreshed = new HashSet<>();
+        for (int i = 0; i < top.size() && i < hotSetSize; i++)
+            refreshed.add(top.get(i).getKey());
+
+        if (!refreshed.equals(hotKeys))
+        {
+            // publish the set first, so a reader seeing the new epoch also sees the new set
+            hotKeys = refreshed;
+            invalidateAll();
+        }
+    }
+
+    private int index(K key)
+    {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static class Slot<K, V>
+    {
+        private final K key;
+
+        private final ValueHolder<V> valueHolder;
+
+        private final long epoch;
+
+        Slot(K key, ValueHolder<V> valueHolder, long epoch)
+        {
+            this.key = key;
+            this.valueHolder = valueHolder;
+            this.epoch = epoch;
+        }
+    }
+}
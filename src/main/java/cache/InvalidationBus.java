@@ -0,0 +1,520 @@
+package cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Invalidations shared by the processes of a host through a memory-mapped ring buffer file:
+ * writes to a cache publish the key, and every other process attached to the file drops it
+ * from its cache of the same name.
+ *
+ * Writers only enqueue the invalidation; a publisher thread appends them to the ring in batches,
+ * under a file lock, and a tailer thread polls the mapped write position and applies the records
+ * of other processes. A tailer overtaken by writers has lost invalidations, so it clears its caches.
+ *
+ * Records are read seqlock-style: the publisher stores the end of a batch as the reserved position
+ * before writing it, and the tailer checks a copied record against the reservation, so a record
+ * overwritten while it was copied is never applied.
+ */
+public class InvalidationBus implements Closeable
+{
+    private static final Logger LOG = LoggerFactory.getLogger(InvalidationBus.class);
+
+    private static final int MAGIC = 0x53434942;
+
+    private static final int HEADER_SIZE = 128;
+
+    private static final int CAPACITY_OFFSET = 8;
+
+    /**
+     * Bytes ever written to the ring, on its own cache line
+     */
+    private static final int WRITE_POSITION_OFFSET = 64;
+
+    /**
+     * End of the batch being written, ahead of the write position until the batch is published
+     */
+    private static final int RESERVED_POSITION_OFFSET = 72;
+
+    private static final int KEY = 1;
+
+    private static final int TAG = 2;
+
+    private static final int CLEAR = 3;
+
+    private static final int PADDING = 4;
+
+    /**
+     * length, type, source, cache name length, payload length
+     */
+    private static final int RECORD_HEADER_SIZE = 4 + 4 + 8 + 4 + 4;
+
+    private static final int MAX_BATCH = 1024;
+
+    /**
+     * In-process exclusion of the buses attached to the same file, file locks are held per JVM
+     */
+    private static final Map<String, Object> PROCESS_LOCKS = new ConcurrentHashMap<>();
+
+    private final Target target;
+
+    private final ClassLoader classLoader;
+
+    private final long source = ThreadLocalRandom.current().nextLong();
+
+    private final RandomAccessFile file;
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer buffer;
+
+    private final Object processLock;
+
+    private final int capacity;
+
+    private final long pollNanos;
+
+    private final BlockingQueue<Invalidation> pending;
+
+    /**
+     * Set when the queue was full, the next batch then clears every cache
+     */
+    private volatile boolean overflow;
+
+    /**
+     * Its atomic increments order the accesses to the mapping: HotSpot implements them with a full
+     * CPU barrier, which other processes mapping the file observe as well. Java 8 has no VarHandle.
+     */
+    private final AtomicInteger fence = new AtomicInteger();
+
+    /**
+     * Owned by the tailer thread once started
+     */
+    private long readPosition;
+
+    private final Thread publisher;
+
+    private final Thread tailer;
+
+    private volatile boolean isClosed;
+
+    public InvalidationBus(File path, int ringSize, long pollMillis, Target target, ClassLoader classLoader)
+            throws IOException
+    {
+        if (ringSize < 4096 || ringSize % 8 != 0)
+            throw new IllegalArgumentException("ring size should be a multiple of 8, at least 4096: " + ringSize);
+
+        this.target = target;
+        this.classLoader = classLoader;
+        this.pollNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, pollMillis));
+        this.pending = new ArrayBlockingQueue<>(MAX_BATCH * 16);
+        this.processLock = PROCESS_LOCKS.computeIfAbsent(path.getCanonicalPath(), (p) -> new Object());
+        this.file = new RandomAccessFile(path, "rw");
+        this.channel = file.getChannel();
+
+        int size;
+        synchronized (processLock)
+        {
+            try (FileLock lock = channel.lock())
+            {
+                if (channel.size() < HEADER_SIZE)
+                {
+                    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                    header.putInt(0, MAGIC);
+                    header.putInt(CAPACITY_OFFSET, ringSize);
+                    channel.write(header, 0);
+                    file.setLength(HEADER_SIZE + ringSize);
+                }
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                channel.read(header, 0);
+                if (header.getInt(0) != MAGIC)
+                    throw new IOException(path + " is not an invalidation bus file");
+                // the first process decides the size
+                size = header.getInt(CAPACITY_OFFSET);
+            }
+        }
+        this.capacity = size;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity);
+        // invalidations published from now on are applied, even before the tailer runs
+        this.readPosition = buffer.getLong(WRITE_POSITION_OFFSET);
+
+        this.publisher = new Thread(this::publish, "invalidation-publisher-" + path.getName());
+        this.publisher.setDaemon(true);
+        this.tailer = new Thread(this::tail, "invalidation-tailer-" + path.getName());
+        this.tailer.setDaemon(true);
+        this.publisher.start();
+        this.tailer.start();
+    }
+
+    /**
+     * Attach to the file of the "invalidationBus" property, null if it is not set
+     */
+    static InvalidationBus fromProperties(Properties properties, Target target, ClassLoader classLoader)
+    {
+        String path = properties.getProperty("invalidationBus");
+        if (path == null)
+            return null;
+
+        try
+        {
+            return new InvalidationBus(new File(path),
+                    Integer.parseInt(properties.getProperty("invalidationBusSize", String.valueOf(1 << 20))),
+                    Long.parseLong(properties.getProperty("invalidationBusPollMillis", "1")),
+                    target, classLoader);
+        }
+        catch (IOException e)
+        {
+            throw new javax.cache.CacheException("cannot attach to invalidation bus " + path, e);
+        }
+    }
+
+    /**
+     * Never blocks nor calls the system: the key is published by the background thread
+     */
+    public void publishKey(String cacheName, Object key)
+    {
+        enqueue(new Invalidation(KEY, cacheName, key));
+    }
+
+    public void publishTag(String cacheName, Object tag)
+    {
+        enqueue(new Invalidation(TAG, cacheName, tag));
+    }
+
+    public void publishClear(String cacheName)
+    {
+        enqueue(new Invalidation(CLEAR, cacheName, null));
+    }
+
+    @Override
+    public void close()
+    {
+        if (isClosed)
+            return;
+
+        isClosed = true;
+        LockSupport.unpark(publisher);
+        LockSupport.unpark(tailer);
+        try
+        {
+            publisher.join();
+            tailer.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        try
+        {
+            file.close();
+        }
+        catch (IOException e)
+        {
+            LOG.warn("cannot close invalidation bus file", e);
+        }
+    }
+
+    private void enqueue(Invalidation invalidation)
+    {
+        if (!pending.offer(invalidation))
+            overflow = true;
+    }
+
+    private void publish()
+    {
+        List<Invalidation> batch = new ArrayList<>(MAX_BATCH);
+        ByteBuffer view = buffer.duplicate();
+        while (!isClosed || !pending.isEmpty())
+        {
+            if (pending.drainTo(batch, MAX_BATCH) == 0 && !overflow)
+            {
+                if (!isClosed)
+                    LockSupport.parkNanos(this, pollNanos);
+                continue;
+            }
+
+            if (overflow)
+            {
+                // invalidations were dropped, the other processes must drop everything
+                overflow = false;
+                batch.clear();
+                batch.add(new Invalidation(CLEAR, "", null));
+            }
+
+            try
+            {
+                append(view, batch);
+            }
+            catch (IOException | RuntimeException e)
+            {
+                LOG.warn("cannot publish invalidations", e);
+            }
+            batch.clear();
+        }
+    }
+
+    private void append(ByteBuffer view, List<Invalidation> batch) throws IOException
+    {
+        List<byte[]> records = new ArrayList<>(batch.size());
+        for (Invalidation invalidation : batch)
+            records.add(encode(invalidation));
+
+        synchronized (processLock)
+        {
+            try (FileLock lock = channel.lock())
+            {
+                long position = buffer.getLong(WRITE_POSITION_OFFSET);
+                long end = position;
+                for (byte[] record : records)
+                    end = recordStart(end, record.length) + record.length;
+                // the reservation must be visible before the records it overwrites change
+                buffer.putLong(RESERVED_POSITION_OFFSET, end);
+                fence.incrementAndGet();
+
+                for (byte[] record : records)
+                {
+                    long start = recordStart(position, record.length);
+                    int index = (int) (position % capacity);
+                    if (start != position)
+                    {
+                        view.putInt(HEADER_SIZE + index, capacity - index);
+                        view.putInt(HEADER_SIZE + index + 4, PADDING);
+                    }
+                    ((Buffer) view).position(HEADER_SIZE + (int) (start % capacity));
+                    view.put(record);
+                    position = start + record.length;
+                }
+                // the records must be visible before the position
+                fence.incrementAndGet();
+                buffer.putLong(WRITE_POSITION_OFFSET, position);
+            }
+        }
+    }
+
+    /**
+     * @return where a record written at the position starts: no record wraps around the end of the ring,
+     * padding fills the end instead
+     */
+    private long recordStart(long position, int length)
+    {
+        int index = (int) (position % capacity);
+        return index + length > capacity ? position + capacity - index : position;
+    }
+
+    private byte[] encode(Invalidation invalidation)
+    {
+        byte[] name = invalidation.cacheName.getBytes(StandardCharsets.UTF_8);
+        byte[] payload = new byte[0];
+        int type = invalidation.type;
+        if (invalidation.payload != null)
+        {
+            try
+            {
+                payload = serialize(invalidation.payload);
+            }
+            catch (IOException e)
+            {
+                LOG.warn("cannot serialize " + invalidation.payload + ", the whole cache is invalidated", e);
+                type = CLEAR;
+            }
+        }
+        if (RECORD_HEADER_SIZE + name.length + payload.length > capacity / 4)
+        {
+            type = CLEAR;
+            payload = new byte[0];
+        }
+        if (type == CLEAR)
+            payload = new byte[0];
+
+        int length = (RECORD_HEADER_SIZE + name.length + payload.length + 7) & ~7;
+        ByteBuffer record = ByteBuffer.allocate(length);
+        record.putInt(length).putInt(type).putLong(source)
+                .putInt(name.length).putInt(payload.length).put(name).put(payload);
+        return record.array();
+    }
+
+    private void tail()
+    {
+        ByteBuffer view = buffer.duplicate();
+        long readPosition = this.readPosition;
+        while (!isClosed)
+        {
+            long writePosition = buffer.getLong(WRITE_POSITION_OFFSET);
+            fence.incrementAndGet();
+            if (writePosition == readPosition)
+            {
+                LockSupport.parkNanos(this, pollNanos);
+                continue;
+            }
+
+            while (readPosition < writePosition)
+            {
+                if (writePosition - readPosition > capacity)
+                {
+                    lapped();
+                    readPosition = writePosition;
+                    break;
+                }
+
+                int index = (int) (readPosition % capacity);
+                int length = view.getInt(HEADER_SIZE + index);
+                byte[] record = null;
+                if (length >= 8 && length % 8 == 0 && index + length <= capacity
+                        && view.getInt(HEADER_SIZE + index + 4) != PADDING)
+                {
+                    record = new byte[length];
+                    ((Buffer) view).position(HEADER_SIZE + index);
+                    view.get(record);
+                }
+
+                // a batch reserved past a capacity from the record may have overwritten it while it was read
+                fence.incrementAndGet();
+                long reserved = buffer.getLong(RESERVED_POSITION_OFFSET);
+                if (reserved - readPosition > capacity || length < 8 || length % 8 != 0 || index + length > capacity)
+                {
+                    lapped();
+                    readPosition = buffer.getLong(WRITE_POSITION_OFFSET);
+                    break;
+                }
+
+                readPosition += length;
+                if (record != null)
+                    apply(ByteBuffer.wrap(record));
+            }
+        }
+    }
+
+    private void apply(ByteBuffer record)
+    {
+        try
+        {
+            record.getInt();
+            int type = record.getInt();
+            if (record.getLong() == source)
+                return;
+
+            byte[] name = new byte[record.getInt()];
+            byte[] payload = new byte[record.getInt()];
+            record.get(name).get(payload);
+            String cacheName = new String(name, StandardCharsets.UTF_8);
+
+            switch (type)
+            {
+                case KEY:
+                    Class<?> keyType = target.keyType(cacheName);
+                    // no cache of that name in this process, nothing to invalidate
+                    if (keyType != null)
+                        target.invalidateKey(cacheName, deserialize(payload, keyType));
+                    break;
+                case TAG:
+                    target.invalidateTag(cacheName, deserialize(payload));
+                    break;
+                case CLEAR:
+                    target.invalidateAll(cacheName.isEmpty() ? null : cacheName);
+                    break;
+                default:
+                    LOG.warn("unknown invalidation record type " + type);
+            }
+        }
+        catch (IOException | ClassNotFoundException | RuntimeException e)
+        {
+            LOG.warn("cannot apply invalidation, clearing the caches", e);
+            target.invalidateAll(null);
+        }
+    }
+
+    private void lapped()
+    {
+        LOG.warn("invalidations were overwritten before they were read, clearing the caches");
+        target.invalidateAll(null);
+    }
+
+    private static byte[] serialize(Object object) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+        {
+            out.writeObject(object);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Records come from other processes: only the expected types and the JDK value classes are deserialized,
+     * a record with any other class fails and clears the caches
+     */
+    private Object deserialize(byte[] data, Class<?>... expectedTypes) throws IOException, ClassNotFoundException
+    {
+        try (ObjectInputStream in = new ValueObjectInputStream(new ByteArrayInputStream(data), classLoader,
+                expectedTypes))
+        {
+            return in.readObject();
+        }
+    }
+
+    /**
+     * Applies the invalidations of the other processes
+     */
+    public interface Target
+    {
+        /**
+         * @return the key type of the cache, keys of other types are not deserialized;
+         *         null if there is no such cache
+         */
+        default Class<?> keyType(String cacheName)
+        {
+            return Object.class;
+        }
+
+        void invalidateKey(String cacheName, Object key);
+
+        void invalidateTag(String cacheName, Object tag);
+
+        /**
+         * @param cacheName null for every cache
+         */
+        void invalidateAll(String cacheName);
+    }
+
+    private static class Invalidation
+    {
+        private final int type;
+
+        private final String cacheName;
+
+        private final Object payload;
+
+        Invalidation(int type, String cacheName, Object payload)
+        {
+            this.type = type;
+            this.cacheName = cacheName;
+            this.payload = payload;
+        }
+    }
+}
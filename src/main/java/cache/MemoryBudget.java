@@ -0,0 +1,130 @@
+package cache;
+
+import store.BoundedDataStore;
+import store.EntryBudget;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A number of entries shared by the caches of a manager, enabled by the "memoryBudget" property.
+ * Caches grow freely while the budget lasts; once it is spent, an insert evicts the least recently
+ * used entry of the cache whose own least recently used entry is the oldest, i.e. the entry of least
+ * value across all caches. A cache is never shrunk below its minimum share by other caches, and its
+ * maximum share is the capacity of its store.
+ */
+public class MemoryBudget implements EntryBudget
+{
+    /**
+     * Give up making room after this many failed evictions, the insert then overdraws the budget
+     */
+    private static final int MAX_EVICTION_ATTEMPTS = 8;
+
+    private final long budget;
+
+    private final AtomicLong used = new AtomicLong();
+
+    /**
+     * Registered store -> minimum entries
+     */
+    private final Map<BoundedDataStore<?, ?>, Long> stores = new ConcurrentHashMap<>();
+
+    public MemoryBudget(long budget)
+    {
+        if (budget <= 0)
+            throw new IllegalArgumentException("memoryBudget should be positive: " + budget);
+
+        this.budget = budget;
+    }
+
+    public long getBudget()
+    {
+        return budget;
+    }
+
+    public long getUsed()
+    {
+        return used.get();
+    }
+
+    /**
+     * @param minShare fraction of the budget the store keeps whatever the demand of other stores
+     */
+    public void register(BoundedDataStore<?, ?> store, double minShare)
+    {
+        stores.put(store, (long) (budget * minShare));
+    }
+
+    /**
+     * The entries of the store stay accounted until it is cleared
+     */
+    public void unregister(BoundedDataStore<?, ?> store)
+    {
+        stores.remove(store);
+    }
+
+    @Override
+    public void reserve(BoundedDataStore<?, ?> store)
+    {
+        int attempts = 0;
+        while (true)
+        {
+            long current = used.get();
+            if (current < budget)
+            {
+                if (used.compareAndSet(current, current + 1))
+                    return;
+                continue;
+            }
+
+            BoundedDataStore<?, ?> victim = attempts++ < MAX_EVICTION_ATTEMPTS ? victim(store) : null;
+            if (victim == null)
+            {
+                // every store is at its minimum share, or racing evictions keep failing
+                used.incrementAndGet();
+                return;
+            }
+            // releases an entry of the budget on success
+            victim.evict();
+        }
+    }
+
+    @Override
+    public void charge()
+    {
+        used.incrementAndGet();
+    }
+
+    @Override
+    public void release(long count)
+    {
+        used.addAndGet(-count);
+    }
+
+    /**
+     * @return the store above its minimum share whose least recently used entry is the oldest
+     */
+    private BoundedDataStore<?, ?> victim(BoundedDataStore<?, ?> requester)
+    {
+        BoundedDataStore<?, ?> victim = null;
+        long oldest = Long.MAX_VALUE;
+        for (Map.Entry<BoundedDataStore<?, ?>, Long> entry : stores.entrySet())
+        {
+            BoundedDataStore<?, ?> store = entry.getKey();
+            if (store.getSize() <= entry.getValue())
+                continue;
+
+            long accessTime = store.oldestAccessTime();
+            if (victim == null || accessTime - oldest < 0)
+            {
+                victim = store;
+                oldest = accessTime;
+            }
+        }
+        // the requester always may recycle its own entries
+        if (victim == null && requester.getSize() > 0)
+            return requester;
+        return victim;
+    }
+}
@@ -0,0 +1,207 @@
+package cache;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import store.BoundedDataStore;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resize the bounded stores of a cache manager according to old generation occupancy:
+ * shrink them (evicting in bulk) when the occupancy after a GC crosses the high watermark,
+ * and grow them back towards their configured capacity once it drops below the low watermark.
+ * Only the collections of the tenured pool drive the resizes, once each, with the occupancy
+ * they left behind: young collections neither refresh it nor free the tenured pool, reacting
+ * to them would shrink the stores again and again on the same occupancy.
+ */
+public class MemoryPressureMonitor implements NotificationListener
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(MemoryPressureMonitor.class);
+
+    private static final String GC_NOTIFICATION = "com.sun.management.gc.notification";
+
+    private static final double GROW_FACTOR = 1.25;
+
+    private final double highWatermark;
+
+    private final double lowWatermark;
+
+    private final double shrinkFactor;
+
+    private final double minCapacityRatio;
+
+    private final MemoryPoolMXBean tenuredPool;
+
+    /**
+     * Names of the collectors collecting the tenured pool
+     */
+    private final Set<String> tenuredCollectors = new HashSet<>();
+
+    private final List<NotificationEmitter> emitters = new ArrayList<>();
+
+    /**
+     * Tenured pool occupancy after the last collection acted upon, -1 before the first one
+     */
+    private long lastUsed = -1;
+
+    /**
+     * Registered store -> configured capacity
+     */
+    private final Map<BoundedDataStore<?, ?>, Long> stores = new ConcurrentHashMap<>();
+
+    public MemoryPressureMonitor(double highWatermark, double lowWatermark,
+                                 double shrinkFactor, double minCapacityRatio)
+    {
+        if (lowWatermark <= 0 || lowWatermark >= highWatermark || highWatermark >= 1)
+            throw new IllegalArgumentException("watermarks should satisfy 0 < low < high < 1");
+        if (shrinkFactor <= 0 || shrinkFactor >= 1)
+            throw new IllegalArgumentException("shrinkFactor should be in (0, 1)");
+
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+        this.shrinkFactor = shrinkFactor;
+        this.minCapacityRatio = minCapacityRatio;
+        this.tenuredPool = findTenuredPool();
+
+        if (tenuredPool == null)
+        {
+            LOGGER.warn("no heap pool supports usage thresholds, adaptive capacity is disabled");
+            return;
+        }
+
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            if (Arrays.asList(gc.getMemoryPoolNames()).contains(tenuredPool.getName()))
+            {
+                tenuredCollectors.add(gc.getName());
+                subscribe(gc);
+            }
+        }
+    }
+
+    public static MemoryPressureMonitor fromProperties(Properties properties)
+    {
+        return new MemoryPressureMonitor(
+                Double.parseDouble(properties.getProperty("highWatermark", "0.85")),
+                Double.parseDouble(properties.getProperty("lowWatermark", "0.6")),
+                Double.parseDouble(properties.getProperty("shrinkFactor", "0.5")),
+                Double.parseDouble(properties.getProperty("minCapacityRatio", "0.1")));
+    }
+
+    public void register(BoundedDataStore<?, ?> store)
+    {
+        stores.put(store, store.getCapacity());
+    }
+
+    public void unregister(BoundedDataStore<?, ?> store)
+    {
+        stores.remove(store);
+    }
+
+    public void close()
+    {
+        for (NotificationEmitter emitter : emitters)
+        {
+            try
+            {
+                emitter.removeNotificationListener(this);
+            }
+            catch (ListenerNotFoundException e)
+            {
+                LOGGER.warn("cannot unsubscribe from " + emitter, e);
+            }
+        }
+        emitters.clear();
+        stores.clear();
+    }
+
+    @Override
+    public void handleNotification(Notification notification, Object handback)
+    {
+        if (!GC_NOTIFICATION.equals(notification.getType()) || tenuredPool == null)
+            return;
+
+        GarbageCollectionNotificationInfo info =
+                GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        if (tenuredCollectors.contains(info.getGcName()))
+            onCollection(info.getGcInfo().getMemoryUsageAfterGc().get(tenuredPool.getName()));
+    }
+
+    /**
+     * Check the occupancy left behind by a collection of the tenured pool.
+     * An unchanged occupancy is a stale report: the stores were already resized for it.
+     */
+    private synchronized void onCollection(MemoryUsage usage)
+    {
+        if (usage == null || usage.getMax() <= 0 || usage.getUsed() == lastUsed)
+            return;
+        lastUsed = usage.getUsed();
+
+        double occupancy = (double) usage.getUsed() / usage.getMax();
+        if (occupancy >= highWatermark)
+            shrink();
+        else if (occupancy < lowWatermark)
+            grow();
+    }
+
+    private void shrink()
+    {
+        stores.forEach((store, configured) -> {
+            long floor = Math.max(1, (long) (configured * minCapacityRatio));
+            long capacity = Math.max(floor, (long) (store.getCapacity() * shrinkFactor));
+            if (capacity < store.getCapacity())
+            {
+                long evicted = store.setCapacity(capacity);
+                LOGGER.info("memory pressure: shrink store to " + capacity + ", " + evicted + " entries evicted");
+            }
+        });
+    }
+
+    private void grow()
+    {
+        stores.forEach((store, configured) -> {
+            long capacity = Math.min(configured, (long) Math.ceil(store.getCapacity() * GROW_FACTOR));
+            if (capacity > store.getCapacity())
+                store.setCapacity(capacity);
+        });
+    }
+
+    private void subscribe(Object bean)
+    {
+        if (bean instanceof NotificationEmitter)
+        {
+            NotificationEmitter emitter = (NotificationEmitter) bean;
+            emitter.addNotificationListener(this, null, null);
+            emitters.add(emitter);
+        }
+    }
+
+    private static MemoryPoolMXBean findTenuredPool()
+    {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+        {
+            // only the old generation supports usage thresholds among heap pools
+            if (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported())
+                return pool;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,55 @@
+package cache;
+
+import store.LRUDataStore;
+import store.value.ValueHolder;
+
+/**
+ * Remember keys the loader reported as absent, for a limited time and in a bounded LRU store
+ * @param <K>: Key type
+ */
+class NegativeCache<K>
+{
+    private final LRUDataStore<K, Boolean> absentKeys;
+
+    private final long ttlNanos;
+
+    NegativeCache(long capacity, long ttlNanos)
+    {
+        this.absentKeys = new LRUDataStore<>(capacity);
+        this.ttlNanos = ttlNanos;
+    }
+
+    boolean isAbsent(K key)
+    {
+        ValueHolder<Boolean> holder = absentKeys.get(key);
+        if (holder == null)
+            return false;
+
+        if (System.nanoTime() - holder.creationTime() >= ttlNanos)
+        {
+            absentKeys.remove(key);
+            return false;
+        }
+        return true;
+    }
+
+    void markAbsent(K key)
+    {
+        absentKeys.put(key, Boolean.TRUE);
+    }
+
+    /**
+     * The key got a value, called on every put: the lookup in the concurrent map sees every completed
+     * markAbsent, and only a marked key pays for the store lock
+     */
+    void forget(K key)
+    {
+        if (absentKeys.peek(key) != null)
+            absentKeys.remove(key);
+    }
+
+    void clear()
+    {
+        absentKeys.clear();
+    }
+}
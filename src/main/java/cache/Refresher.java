@@ -0,0 +1,122 @@
+package cache;
+
+import event.CacheLoaderEvent;
+import event.Events;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import store.value.ValueHolder;
+
+import javax.cache.integration.CacheLoader;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Refresh-after-write: a read of an entry older than the refresh delay schedules a single
+ * asynchronous reload of the key on a bounded executor, while the reader gets the current value.
+ * Entries that are never read are never reloaded.
+ */
+class Refresher<K, V>
+{
+    private static final Logger LOG = LoggerFactory.getLogger(Refresher.class);
+
+    private final String cacheName;
+
+    private final long refreshNanos;
+
+    private final CacheLoader<K, V> loader;
+
+    private final RefreshCallback<K, V> callback;
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Keys with a reload scheduled or running, so a hot key is reloaded only once
+     */
+    private final Set<K> inFlight = ConcurrentHashMap.newKeySet();
+
+    Refresher(String cacheName, SimpleConfiguration<K, V> configuration, CacheLoader<K, V> loader,
+              RefreshCallback<K, V> callback)
+    {
+        this.cacheName = cacheName;
+        this.refreshNanos = configuration.getRefreshAfterWriteNanos();
+        this.loader = loader;
+        this.callback = callback;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(configuration.getRefreshThreads(), configuration.getRefreshThreads(),
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(configuration.getRefreshQueueSize()),
+                (runnable) -> {
+                    Thread thread = new Thread(runnable, "refresh-" + cacheName + "-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Called on every read hit, cheap unless the entry is due for a refresh
+     */
+    void onRead(K key, ValueHolder<V> valueHolder)
+    {
+        if (System.nanoTime() - valueHolder.creationTime() < refreshNanos || !inFlight.add(key))
+            return;
+
+        try
+        {
+            executor.execute(() -> reload(key, valueHolder));
+        }
+        catch (RejectedExecutionException e)
+        {
+            // queue full or shut down, a later read will try again
+            inFlight.remove(key);
+        }
+    }
+
+    void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    private void reload(K key, ValueHolder<V> stale)
+    {
+        CacheLoaderEvent event = Events.AVAILABLE ? new CacheLoaderEvent() : null;
+        if (event != null)
+            event.begin();
+
+        try
+        {
+            V value = null;
+            try
+            {
+                value = loader.load(key);
+            }
+            finally
+            {
+                if (event != null)
+                    event.complete(cacheName, key, 1, value == null ? 0 : 1, true);
+            }
+            callback.refreshed(key, stale, value);
+        }
+        catch (Exception e)
+        {
+            LOG.warn("cannot refresh " + key + ", keeping the stale value", e);
+        }
+        finally
+        {
+            inFlight.remove(key);
+        }
+    }
+
+    interface RefreshCallback<K, V>
+    {
+        /**
+         * @param value reloaded value, null if the loader does not know the key any more
+         */
+        void refreshed(K key, ValueHolder<V> stale, V value);
+    }
+}
@@ -0,0 +1,229 @@
+package cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.cache.Cache;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Attribute -> keys map over the values of a cache, maintained on put and remove.
+ * Stores evict silently, so the keys found for an attribute are checked against the cache
+ * when queried, and the index is pruned in the background once it holds far more keys than the store.
+ * @param <K>: Key type
+ * @param <V>: Value type
+ */
+class SecondaryIndex<K, V>
+{
+    private static final Logger LOG = LoggerFactory.getLogger(SecondaryIndex.class);
+
+    private static final int PRUNE_CHECK_PERIOD = 4096;
+
+    private final String name;
+
+    private final Function<? super V, ?> extractor;
+
+    /**
+     * Current value of a key in the cache, null if it has none
+     */
+    private final Function<K, V> reader;
+
+    /**
+     * Entries of the cache, iterated without changing any access order
+     */
+    private final Supplier<Spliterator<Cache.Entry<K, V>>> entries;
+
+    private final ConcurrentHashMap<Object, Set<K>> keysByAttribute = new ConcurrentHashMap<>();
+
+    /**
+     * Indexed (attribute, key) pairs
+     */
+    private final LongAdder size = new LongAdder();
+
+    private final AtomicInteger updates = new AtomicInteger();
+
+    private final AtomicBoolean prunePending = new AtomicBoolean();
+
+    private volatile ThreadPoolExecutor pruner;
+
+    SecondaryIndex(String name, Function<? super V, ?> extractor, Function<K, V> reader,
+                   Supplier<Spliterator<Cache.Entry<K, V>>> entries)
+    {
+        this.name = name;
+        this.extractor = extractor;
+        this.reader = reader;
+        this.entries = entries;
+    }
+
+    String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Called after the value of the key changed in the store
+     * @param oldValue previous value, null if there was none
+     */
+    void update(K key, V oldValue, V newValue)
+    {
+        Object oldAttribute = oldValue == null ? null : extractor.apply(oldValue);
+        Object newAttribute = newValue == null ? null : extractor.apply(newValue);
+        if (oldAttribute != null && !oldAttribute.equals(newAttribute))
+        {
+            unlink(oldAttribute, key);
+            // a concurrent put may have stored a value with the old attribute again, and linked it before this unlink
+            V current = reader.apply(key);
+            if (current != null && oldAttribute.equals(extractor.apply(current)))
+                link(oldAttribute, key);
+        }
+        if (newAttribute != null)
+            link(newAttribute, key);
+
+        // the writer only schedules the prune, it never walks the cache itself
+        if (updates.incrementAndGet() % PRUNE_CHECK_PERIOD == 0
+                && size.sum() > 2 * entries.get().estimateSize() + PRUNE_CHECK_PERIOD
+                && prunePending.compareAndSet(false, true))
+            pruner().execute(this::prune);
+    }
+
+    /**
+     * Index the entries already in the cache
+     */
+    void build()
+    {
+        entries.get().forEachRemaining((entry) -> {
+            Object attribute = extractor.apply(entry.getValue());
+            if (attribute != null)
+                link(attribute, entry.getKey());
+        });
+    }
+
+    /**
+     * @return the entries of the cache whose value has the attribute
+     */
+    Map<K, V> find(Object attribute)
+    {
+        Set<K> keys = keysByAttribute.get(attribute);
+        if (keys == null)
+            return new HashMap<>();
+
+        Map<K, V> found = new HashMap<>();
+        for (K key : keys)
+        {
+            V value = validate(attribute, key);
+            if (value != null)
+                found.put(key, value);
+        }
+        return found;
+    }
+
+    void clear()
+    {
+        keysByAttribute.clear();
+        size.reset();
+    }
+
+    void shutdown()
+    {
+        ThreadPoolExecutor executor = pruner;
+        if (executor != null)
+            executor.shutdownNow();
+    }
+
+    /**
+     * Drop every key whose current value does not have the attribute any more
+     */
+    private void prune()
+    {
+        // updates from now on may need another prune
+        prunePending.set(false);
+        try
+        {
+            // each key is checked through the store, without copying the cache
+            keysByAttribute.forEach((attribute, keys) -> {
+                for (K key : keys)
+                    validate(attribute, key);
+            });
+        }
+        catch (RuntimeException e)
+        {
+            LOG.warn("cannot prune index " + name, e);
+        }
+    }
+
+    private ThreadPoolExecutor pruner()
+    {
+        ThreadPoolExecutor executor = pruner;
+        if (executor == null)
+        {
+            synchronized (this)
+            {
+                executor = pruner;
+                if (executor == null)
+                {
+                    executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                            (runnable) -> {
+                                Thread thread = new Thread(runnable, "index-pruner-" + name);
+                                thread.setDaemon(true);
+                                return thread;
+                            });
+                    executor.allowCoreThreadTimeOut(true);
+                    pruner = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * @return the value of the key if it still has the attribute, otherwise unlink the key and return null
+     */
+    private V validate(Object attribute, K key)
+    {
+        V value = reader.apply(key);
+        if (value != null && attribute.equals(extractor.apply(value)))
+            return value;
+
+        unlink(attribute, key);
+        // a put may have linked the key again between the read and the unlink
+        value = reader.apply(key);
+        if (value != null && attribute.equals(extractor.apply(value)))
+        {
+            link(attribute, key);
+            return value;
+        }
+        return null;
+    }
+
+    private void link(Object attribute, K key)
+    {
+        keysByAttribute.compute(attribute, (a, keys) -> {
+            if (keys == null)
+                keys = ConcurrentHashMap.newKeySet();
+            if (keys.add(key))
+                size.increment();
+            return keys;
+        });
+    }
+
+    private void unlink(Object attribute, K key)
+    {
+        keysByAttribute.computeIfPresent(attribute, (a, keys) -> {
+            if (keys.remove(key))
+                size.decrement();
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+}
@@ -1,23 +1,51 @@
 package cache;
 
+import cache.stats.CacheStatistics;
+import cache.stats.HotKey;
+import cache.stats.HotKeySampler;
+import cache.stats.HotKeys;
+import cache.stats.MBeans;
+import event.CacheGetEvent;
+import event.CacheLoaderEvent;
+import event.CachePutEvent;
+import event.Events;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import store.BoundedDataStore;
 import store.DataStore;
+import store.FrozenDataStore;
+import store.value.Tags;
 import store.value.ValueHolder;
 
 import javax.cache.Cache;
 import javax.cache.CacheManager;
 import javax.cache.configuration.CacheEntryListenerConfiguration;
+import javax.cache.configuration.CompleteConfiguration;
 import javax.cache.configuration.Configuration;
+import javax.cache.integration.CacheLoader;
+import javax.cache.integration.CacheLoaderException;
+import javax.cache.integration.CacheWriter;
+import javax.cache.integration.CacheWriterException;
 import javax.cache.integration.CompletionListener;
 import javax.cache.processor.EntryProcessor;
 import javax.cache.processor.EntryProcessorException;
 import javax.cache.processor.EntryProcessorResult;
+import javax.management.ObjectName;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Contain a K-V map for caching
@@ -28,6 +56,8 @@ public class SimpleCache<K, V> implements Cache<K, V>
 {
     private static final Logger LOG = LoggerFactory.getLogger(SimpleCache.class);
 
+    private static final int DEFAULT_REPLICA_SAMPLE_RATE = 64;
+
     private volatile boolean isClosed;
 
     private final DataStore<K, V> dataStore;
@@ -38,6 +68,69 @@ public class SimpleCache<K, V> implements Cache<K, V>
 
     private Configuration<K, V> configuration;
 
+    /**
+     * Configured CacheLoader, null if there is none
+     */
+    private final CacheLoader<K, V> cacheLoader;
+
+    private final boolean isReadThrough;
+
+    /**
+     * Written to by put and remove, null unless the configuration is write-through
+     */
+    private final CacheWriter<? super K, ? super V> cacheWriter;
+
+    /**
+     * Refresh-after-write support, null if disabled
+     */
+    private final Refresher<K, V> refresher;
+
+    /**
+     * Keys the loader did not find, null if negative caching is disabled
+     */
+    private final NegativeCache<K> negativeCache;
+
+    private final double bloomFilterFalsePositiveRate;
+
+    /**
+     * Keys that may exist, null until rebuildBloomFilter is called
+     */
+    private volatile BloomFilter<K> bloomFilter;
+
+    /**
+     * Filter being built by rebuildBloomFilter, puts are recorded in it too
+     */
+    private volatile BloomFilter<K> pendingBloomFilter;
+
+    /**
+     * Heavy hitter tracking, null if disabled
+     */
+    private final HotKeySampler<K> hotKeySampler;
+
+    private final ObjectName hotKeysName;
+
+    /**
+     * Thread-local copies of the hottest keys, null if disabled
+     */
+    private final HotKeyReplica<K, V> replica;
+
+    private final TagRegistry<K, V> tagRegistry;
+
+    /**
+     * Null while statistics are disabled
+     */
+    private volatile CacheStatistics statistics;
+
+    private ObjectName statisticsName;
+
+    private final List<SecondaryIndex<K, V>> indexes = new CopyOnWriteArrayList<>();
+
+    /**
+     * Other processes sharing the cache name, null unless the manager has an "invalidationBus"
+     */
+    private final InvalidationBus invalidationBus;
+
+    @SuppressWarnings("unchecked")
     public SimpleCache(final DataStore<K, V> dataStore, String cacheName,
                        SimpleCacheManager cacheManager, Configuration<K, V> configuration)
     {
@@ -46,15 +139,249 @@ public class SimpleCache<K, V> implements Cache<K, V>
         this.cacheName = cacheName;
         this.configuration = configuration;
         this.isClosed = false;
+
+        CompleteConfiguration<K, V> completeConfiguration = configuration instanceof CompleteConfiguration
+                ? (CompleteConfiguration<K, V>) configuration : null;
+        this.cacheLoader = completeConfiguration == null || completeConfiguration.getCacheLoaderFactory() == null
+                ? null : completeConfiguration.getCacheLoaderFactory().create();
+        this.isReadThrough = cacheLoader != null && completeConfiguration.isReadThrough();
+        this.cacheWriter = completeConfiguration == null || !completeConfiguration.isWriteThrough()
+                || completeConfiguration.getCacheWriterFactory() == null
+                ? null : completeConfiguration.getCacheWriterFactory().create();
+
+        if (cacheLoader != null && configuration instanceof SimpleConfiguration
+                && ((SimpleConfiguration<K, V>) configuration).getRefreshAfterWriteNanos() > 0)
+            this.refresher = new Refresher<>(cacheName, (SimpleConfiguration<K, V>) configuration,
+                    cacheLoader, this::refreshed);
+        else
+            this.refresher = null;
+
+        SimpleConfiguration<K, V> simpleConfiguration = configuration instanceof SimpleConfiguration
+                ? (SimpleConfiguration<K, V>) configuration : null;
+        this.negativeCache = isReadThrough && simpleConfiguration != null
+                && simpleConfiguration.getNegativeCacheTtlNanos() > 0
+                ? new NegativeCache<>(simpleConfiguration.getNegativeCacheCapacity(),
+                    simpleConfiguration.getNegativeCacheTtlNanos())
+                : null;
+        this.bloomFilterFalsePositiveRate = simpleConfiguration == null
+                ? 0 : simpleConfiguration.getBloomFilterFalsePositiveRate();
+
+        int replicaSize = simpleConfiguration == null ? 0 : simpleConfiguration.getHotKeyReplicaSize();
+        if (simpleConfiguration != null && (simpleConfiguration.getHotKeySampleRate() > 0 || replicaSize > 0))
+        {
+            // the replica needs a sampler to find its hot keys
+            int sampleRate = simpleConfiguration.getHotKeySampleRate() > 0
+                    ? simpleConfiguration.getHotKeySampleRate() : DEFAULT_REPLICA_SAMPLE_RATE;
+            int topK = Math.max(simpleConfiguration.getHotKeyTopK(), replicaSize * 2);
+            this.hotKeySampler = new HotKeySampler<>(sampleRate, topK);
+            this.hotKeysName = MBeans.objectName("CacheHotKeys", this);
+            MBeans.register(hotKeysName, new HotKeys(hotKeySampler));
+        }
+        else
+        {
+            this.hotKeySampler = null;
+            this.hotKeysName = null;
+        }
+        this.replica = replicaSize > 0 ? new HotKeyReplica<>(hotKeySampler, replicaSize) : null;
+        this.tagRegistry = new TagRegistry<>(cacheName, dataStore, this::removeStale);
+        this.invalidationBus = cacheManager == null ? null : cacheManager.getInvalidationBus();
+        if (completeConfiguration != null && completeConfiguration.isStatisticsEnabled())
+            setStatisticsEnabled(true);
     }
 
     @Override
     public V get(K key)
     {
-        ValueHolder<V> valueHolder = dataStore.get(key);
-        if(valueHolder == null)
+        return get(key, true);
+    }
+
+    /**
+     * Read without read-through: a miss returns null and leaves the loader alone
+     */
+    public V getIfPresent(K key)
+    {
+        return get(key, false);
+    }
+
+    private V get(K key, boolean readThrough)
+    {
+        CacheStatistics stats = statistics;
+        if (stats == null)
+            return getRecorded(key, readThrough);
+
+        long start = System.nanoTime();
+        V value = getRecorded(key, readThrough);
+        stats.recordGetTime(System.nanoTime() - start);
+        return value;
+    }
+
+    private V getRecorded(K key, boolean readThrough)
+    {
+        if (!Events.AVAILABLE)
+            return getValue(key, readThrough);
+
+        CacheGetEvent event = new CacheGetEvent();
+        event.begin();
+        V value = getValue(key, readThrough);
+        event.end();
+        if (event.shouldCommit())
+        {
+            event.cache = cacheName;
+            event.key = String.valueOf(key);
+            event.hit = value != null;
+            event.commit();
+        }
+        return value;
+    }
+
+    private V getValue(K key, boolean readThrough)
+    {
+        if (hotKeySampler != null)
+            hotKeySampler.record(key);
+        CacheStatistics stats = statistics;
+        if (stats != null)
+            stats.recordAccess(key);
+
+        long epoch = 0;
+        if (replica != null)
+        {
+            ValueHolder<V> replicated = replica.get(key);
+            V value = replicated == null ? null : replicated.value();
+            if (value != null)
+            {
+                if (stats != null)
+                    stats.recordHit();
+                if (refresher != null)
+                    refresher.onRead(key, replicated);
+                return value;
+            }
+            epoch = replica.epoch();
+        }
+
+        BloomFilter<K> filter = bloomFilter;
+        if (filter != null && !filter.mightContain(key))
+        {
+            if (stats != null)
+                stats.recordMiss();
             return null;
-        return valueHolder.value();
+        }
+
+        ValueHolder<V> valueHolder = current(key, dataStore.get(key));
+        V value = valueHolder == null ? null : valueHolder.value();
+        if (value == null)
+        {
+            if (stats != null)
+                stats.recordMiss();
+            if (!readThrough || !isReadThrough || (negativeCache != null && negativeCache.isAbsent(key)))
+                return null;
+            return load(key);
+        }
+
+        if (stats != null)
+            stats.recordHit();
+
+        if (replica != null)
+            replica.fill(key, valueHolder, epoch);
+        if (refresher != null)
+            refresher.onRead(key, valueHolder);
+        return value;
+    }
+
+    boolean isReadThrough()
+    {
+        return isReadThrough;
+    }
+
+    /**
+     * Read-through of a key getIfPresent missed, for callers loading on their own thread
+     */
+    V loadMissing(K key)
+    {
+        if (!isReadThrough || (negativeCache != null && negativeCache.isAbsent(key)))
+            return null;
+        BloomFilter<K> filter = bloomFilter;
+        if (filter != null && !filter.mightContain(key))
+            return null;
+
+        // written since the miss
+        ValueHolder<V> valueHolder = current(key, dataStore.get(key));
+        if (valueHolder != null && valueHolder.value() != null)
+            return valueHolder.value();
+        return load(key);
+    }
+
+    /**
+     * Read-through on a miss
+     */
+    private V load(K key)
+    {
+        CacheLoaderEvent event = Events.AVAILABLE ? new CacheLoaderEvent() : null;
+        if (event != null)
+            event.begin();
+
+        V value = null;
+        try
+        {
+            value = cacheLoader.load(key);
+        }
+        catch (CacheLoaderException e)
+        {
+            throw e;
+        }
+        catch (Exception e)
+        {
+            throw new CacheLoaderException(e);
+        }
+        finally
+        {
+            if (event != null)
+                event.complete(cacheName, key, 1, value == null ? 0 : 1, false);
+        }
+
+        if (value != null)
+            put(key, value, (Tags) null);
+        else if (negativeCache != null)
+            negativeCache.markAbsent(key);
+        return value;
+    }
+
+    /**
+     * Store the result of a refresh, unless the entry was written or removed meanwhile.
+     * The refreshed value keeps the tag stamp of the stale one.
+     */
+    private void refreshed(K key, ValueHolder<V> stale, V value)
+    {
+        if (isClosed)
+            return;
+
+        boolean stored = value == null
+                ? dataStore.remove(key, stale)
+                : dataStore.replace(key, stale, value, stale.tags());
+        if (!stored)
+            return;
+        if (replica != null)
+            replica.invalidate(key);
+        indexed(key, stale.value(), value);
+    }
+
+    /**
+     * @return the holder, or null if it belongs to an invalidated tag
+     */
+    private ValueHolder<V> current(K key, ValueHolder<V> valueHolder)
+    {
+        if (valueHolder == null || tagRegistry.isCurrent(valueHolder))
+            return valueHolder;
+
+        removeStale(key, valueHolder);
+        return null;
+    }
+
+    /**
+     * Remove an entry of an invalidated tag, unless it was written meanwhile
+     */
+    private void removeStale(K key, ValueHolder<V> stale)
+    {
+        dataStore.remove(key, stale);
     }
 
     @Override
@@ -68,25 +395,319 @@ public class SimpleCache<K, V> implements Cache<K, V>
     @Override
     public boolean containsKey(K key)
     {
-        return get(key) != null;
+        ValueHolder<V> valueHolder = current(key, dataStore.get(key));
+        return valueHolder != null && valueHolder.value() != null;
     }
 
     @Override
     public void loadAll(Set<? extends K> keys, boolean replaceExistingValues, CompletionListener completionListener)
     {
-        throw new IllegalArgumentException("loadAll to " + keys + " is not " + "supported by this implementation");
+        try
+        {
+            loadKeys(keys, replaceExistingValues);
+        }
+        catch (Exception e)
+        {
+            if (completionListener == null)
+                throw e;
+            completionListener.onException(e);
+            return;
+        }
+
+        if (completionListener != null)
+            completionListener.onCompletion();
+    }
+
+    /**
+     * Load keys through CacheLoader.loadAll, in the caller thread
+     * @return the values found by the loader
+     */
+    private Map<K, V> loadKeys(Set<? extends K> keys, boolean replaceExistingValues)
+    {
+        if (cacheLoader == null)
+            return Collections.emptyMap();
+
+        List<K> toLoad = new ArrayList<>(keys.size());
+        for (K key : keys)
+        {
+            if (key == null)
+                throw new NullPointerException("keys can not contain null");
+            if (replaceExistingValues || !containsKey(key))
+                toLoad.add(key);
+        }
+
+        CacheLoaderEvent event = Events.AVAILABLE ? new CacheLoaderEvent() : null;
+        if (event != null)
+            event.begin();
+
+        Map<K, V> loaded = null;
+        try
+        {
+            loaded = cacheLoader.loadAll(toLoad);
+        }
+        catch (CacheLoaderException e)
+        {
+            throw e;
+        }
+        catch (Exception e)
+        {
+            throw new CacheLoaderException(e);
+        }
+        finally
+        {
+            if (event != null)
+                event.complete(cacheName, toLoad.isEmpty() ? null : toLoad.get(0), toLoad.size(),
+                        loaded == null ? 0 : loaded.size(), false);
+        }
+
+        for (K key : toLoad)
+        {
+            V value = loaded.get(key);
+            if (value != null)
+                put(key, value, (Tags) null);
+            else if (negativeCache != null)
+                negativeCache.markAbsent(key);
+        }
+        return loaded;
+    }
+
+    /**
+     * Replace the Bloom filter by one built from the keys known to exist: with a loader, the given
+     * keys found by CacheLoader.loadAll (they are loaded into the cache), otherwise the given keys
+     * themselves; plus every key currently cached. From then on, get answers null for keys the
+     * filter rules out without touching the store or the loader, and put adds keys to it.
+     */
+    public void rebuildBloomFilter(Set<? extends K> keys)
+    {
+        if (bloomFilterFalsePositiveRate <= 0)
+            throw new IllegalStateException("Bloom filter is not enabled for cache " + cacheName);
+
+        long expected = (keys.size() + dataStore.spliterator().estimateSize()) * 3 / 2;
+        BloomFilter<K> filter = new BloomFilter<>(expected, bloomFilterFalsePositiveRate);
+        pendingBloomFilter = filter;
+        try
+        {
+            if (cacheLoader == null)
+                keys.forEach(filter::add);
+            else
+                loadKeys(keys, false).forEach((key, value) -> {
+                    if (value != null)
+                        filter.add(key);
+                });
+
+            dataStore.spliterator().forEachRemaining((entry) -> filter.add(entry.getKey()));
+            bloomFilter = filter;
+        }
+        finally
+        {
+            pendingBloomFilter = null;
+        }
     }
 
     @Override
     public void put(K key, V value)
     {
-        this.dataStore.put(key, value);
+        write(key, value);
+        put(key, value, (Tags) null);
+        publishKey(key);
+    }
+
+    /**
+     * Put an entry belonging to the given tags, so invalidateTag(tag) drops it along with every
+     * other entry of the tag
+     */
+    public void put(K key, V value, Object... tags)
+    {
+        write(key, value);
+        put(key, value, tagRegistry.stamp(tags));
+        publishKey(key);
+    }
+
+    private void put(K key, V value, Tags tags)
+    {
+        CacheStatistics stats = statistics;
+        if (stats == null)
+        {
+            putRecorded(key, value, tags);
+            return;
+        }
+
+        long start = System.nanoTime();
+        putRecorded(key, value, tags);
+        stats.recordPut(System.nanoTime() - start);
+    }
+
+    private void putRecorded(K key, V value, Tags tags)
+    {
+        if (!Events.AVAILABLE)
+        {
+            putValue(key, value, tags);
+            return;
+        }
+
+        CachePutEvent event = new CachePutEvent();
+        event.begin();
+        putValue(key, value, tags);
+        event.end();
+        if (event.shouldCommit())
+        {
+            event.cache = cacheName;
+            event.key = String.valueOf(key);
+            event.commit();
+        }
+    }
+
+    /**
+     * Replace the whole content of a cache backed by a FrozenDataStore (dataStoreType "frozen")
+     * by the entries, atomically for readers
+     */
+    public void publish(Map<? extends K, ? extends V> entries)
+    {
+        if (!(dataStore instanceof FrozenDataStore))
+            throw new IllegalArgumentException("publish to " + dataStore.getClass().getSimpleName()
+                    + " is not " + "supported by this implementation");
+
+        ((FrozenDataStore<K, V>) dataStore).publish(entries);
+        if (replica != null)
+            replica.invalidateAll();
+        for (SecondaryIndex<K, V> index : indexes)
+        {
+            index.clear();
+            index.build();
+        }
+        if (negativeCache != null)
+            negativeCache.clear();
+        BloomFilter<K> filter = bloomFilter;
+        if (filter != null)
+            entries.keySet().forEach(filter::add);
+    }
+
+    /**
+     * Drop every entry put with the tag, in constant time: they are treated as absent at once and
+     * removed from the store in the background
+     */
+    public void invalidateTag(Object tag)
+    {
+        if (isClosed)
+            throw new IllegalStateException("cache " + cacheName + " is closed");
+
+        invalidateTagLocally(tag);
+        if (invalidationBus != null)
+            invalidationBus.publishTag(cacheName, tag);
+    }
+
+    /**
+     * Writes of another process, nothing is published again
+     */
+    void invalidateTagLocally(Object tag)
+    {
+        tagRegistry.invalidate(tag);
+        if (replica != null)
+            replica.invalidateAll();
+    }
+
+    /**
+     * The key was written by another process: it may exist in the backend now
+     */
+    void invalidateLocally(K key)
+    {
+        removeKey(key);
+        if (negativeCache != null)
+            negativeCache.forget(key);
+        BloomFilter<K> filter = bloomFilter;
+        if (filter != null)
+            filter.add(key);
+        filter = pendingBloomFilter;
+        if (filter != null)
+            filter.add(key);
+    }
+
+    void clearLocally()
+    {
+        dataStore.clear();
+        if (replica != null)
+            replica.invalidateAll();
+        indexes.forEach(SecondaryIndex::clear);
+        if (negativeCache != null)
+            negativeCache.clear();
+    }
+
+    /**
+     * Write-through, before the entry is stored so a failed write leaves the cache unchanged
+     */
+    private void write(K key, V value)
+    {
+        if (cacheWriter == null)
+            return;
+
+        try
+        {
+            cacheWriter.write(new SimpleCacheEntry<>(key, value));
+        }
+        catch (CacheWriterException e)
+        {
+            throw e;
+        }
+        catch (Exception e)
+        {
+            throw new CacheWriterException(e);
+        }
+    }
+
+    private void delete(K key)
+    {
+        if (cacheWriter == null)
+            return;
+
+        try
+        {
+            cacheWriter.delete(key);
+        }
+        catch (CacheWriterException e)
+        {
+            throw e;
+        }
+        catch (Exception e)
+        {
+            throw new CacheWriterException(e);
+        }
+    }
+
+    /**
+     * Loads and refreshes are not published: they read what the other processes would read
+     */
+    private void publishKey(K key)
+    {
+        if (invalidationBus != null)
+            invalidationBus.publishKey(cacheName, key);
+    }
+
+    private void putValue(K key, V value, Tags tags)
+    {
+        if (hotKeySampler != null)
+            hotKeySampler.record(key);
+
+        ValueHolder<V> previous = indexes.isEmpty() ? null : dataStore.peek(key);
+        this.dataStore.put(key, value, tags);
+        if (replica != null)
+            replica.invalidate(key);
+        if (!indexes.isEmpty())
+            indexed(key, previous == null ? null : previous.value(), value);
+
+        if (negativeCache != null)
+            negativeCache.forget(key);
+        BloomFilter<K> filter = bloomFilter;
+        if (filter != null)
+            filter.add(key);
+        filter = pendingBloomFilter;
+        if (filter != null)
+            filter.add(key);
     }
 
     @Override
     public V getAndPut(K key, V value)
     {
-        ValueHolder<V> oldVal = dataStore.get(key);
+        ValueHolder<V> oldVal = current(key, dataStore.get(key));
         if(oldVal != null)
             return oldVal.value();
 
@@ -109,7 +730,31 @@ public class SimpleCache<K, V> implements Cache<K, V>
     @Override
     public boolean remove(K key)
     {
-        return dataStore.remove(key) != null;
+        delete(key);
+        ValueHolder<V> valueHolder = removeKey(key);
+        publishKey(key);
+        return valueHolder != null;
+    }
+
+    /**
+     * @return the removed holder, null if there was none or it belonged to an invalidated tag
+     */
+    private ValueHolder<V> removeKey(K key)
+    {
+        CacheStatistics stats = statistics;
+        long start = stats == null ? 0 : System.nanoTime();
+
+        ValueHolder<V> valueHolder = dataStore.remove(key);
+        if (replica != null)
+            replica.invalidate(key);
+        if (valueHolder != null)
+            indexed(key, valueHolder.value(), null);
+        if (valueHolder == null || !tagRegistry.isCurrent(valueHolder))
+            return null;
+
+        if (stats != null)
+            stats.recordRemoval(System.nanoTime() - start);
+        return valueHolder;
     }
 
     @Override
@@ -122,7 +767,9 @@ public class SimpleCache<K, V> implements Cache<K, V>
     @Override
     public V getAndRemove(K key)
     {
-        ValueHolder<V> valueHolder = dataStore.remove(key);
+        delete(key);
+        ValueHolder<V> valueHolder = removeKey(key);
+        publishKey(key);
         if(valueHolder == null)
             return null;
 
@@ -153,19 +800,52 @@ public class SimpleCache<K, V> implements Cache<K, V>
     @Override
     public void removeAll(Set<? extends K> keys)
     {
-        keys.forEach(dataStore::remove);
+        keys.forEach(this::remove);
     }
 
+    /**
+     * Unlike clear, deletes the keys of the cache through the writer first. Keys the writer failed to delete
+     * stay in the cache, the others are removed before the exception is thrown
+     */
     @Override
     public void removeAll()
     {
-        dataStore.clear();
+        if (cacheWriter == null)
+        {
+            clear();
+            return;
+        }
+
+        List<K> keys = new ArrayList<>();
+        dataStore.spliterator().forEachRemaining((entry) -> keys.add(entry.getKey()));
+        List<K> remaining = new ArrayList<>(keys);
+        try
+        {
+            cacheWriter.deleteAll(remaining);
+        }
+        catch (Exception e)
+        {
+            // the writer leaves the keys it did not delete in the collection
+            Set<K> notDeleted = new HashSet<>(remaining);
+            for (K key : keys)
+            {
+                if (!notDeleted.contains(key))
+                {
+                    removeKey(key);
+                    publishKey(key);
+                }
+            }
+            throw e instanceof CacheWriterException ? (CacheWriterException) e : new CacheWriterException(e);
+        }
+        clear();
     }
 
     @Override
     public void clear()
     {
-        dataStore.clear();
+        clearLocally();
+        if (invalidationBus != null)
+            invalidationBus.publishClear(cacheName);
     }
 
     @Override
@@ -209,19 +889,148 @@ public class SimpleCache<K, V> implements Cache<K, V>
 
             if (cacheManager != null)
                 cacheManager.releaseCache(cacheName);
+            if (refresher != null)
+                refresher.shutdown();
+            tagRegistry.shutdown();
+            indexes.forEach(SecondaryIndex::shutdown);
+            if (hotKeysName != null)
+                MBeans.unregister(hotKeysName);
+            setStatisticsEnabled(false);
             dataStore.clear();
         }
     }
 
+    /**
+     * @return current heavy hitters, hottest first, empty if hot key sampling is disabled
+     */
+    public List<HotKey<K>> getHotKeys()
+    {
+        return hotKeySampler == null ? Collections.emptyList() : hotKeySampler.getHotKeys();
+    }
+
+    /**
+     * Index the values of the cache by the attribute the extractor returns (null for none),
+     * for findByIndex. The entries already cached are indexed at once.
+     */
+    public synchronized void addIndex(String name, Function<? super V, ?> extractor)
+    {
+        if (name == null || extractor == null)
+            throw new NullPointerException("name and extractor can not be null");
+        if (findIndex(name) != null)
+            throw new IllegalArgumentException("index " + name + " already exists in cache " + cacheName);
+
+        SecondaryIndex<K, V> index = new SecondaryIndex<>(name, extractor, this::indexedValue, this::spliterator);
+        indexes.add(index);
+        index.build();
+    }
+
+    public synchronized void removeIndex(String name)
+    {
+        SecondaryIndex<K, V> index = findIndex(name);
+        if (index != null)
+        {
+            indexes.remove(index);
+            index.shutdown();
+        }
+    }
+
+    /**
+     * @return the cached entries whose value has the attribute in the index, without scanning the cache
+     */
+    public Map<K, V> findByIndex(String name, Object attribute)
+    {
+        if (attribute == null)
+            throw new NullPointerException("attribute can not be null");
+
+        SecondaryIndex<K, V> index = findIndex(name);
+        if (index == null)
+            throw new IllegalArgumentException("no index " + name + " in cache " + cacheName);
+        return index.find(attribute);
+    }
+
+    private SecondaryIndex<K, V> findIndex(String name)
+    {
+        for (SecondaryIndex<K, V> index : indexes)
+        {
+            if (index.getName().equals(name))
+                return index;
+        }
+        return null;
+    }
+
+    private void indexed(K key, V oldValue, V newValue)
+    {
+        for (SecondaryIndex<K, V> index : indexes)
+            index.update(key, oldValue, newValue);
+    }
+
+    /**
+     * Value the indexes check their keys against
+     */
+    private V indexedValue(K key)
+    {
+        ValueHolder<V> valueHolder = current(key, dataStore.peek(key));
+        return valueHolder == null ? null : valueHolder.value();
+    }
+
+    /**
+     * @return the statistics of the cache, null if they are disabled
+     */
+    public CacheStatistics getStatistics()
+    {
+        return statistics;
+    }
+
+    /**
+     * Start or stop collecting statistics, exposed by the CacheStatistics MBean
+     */
+    synchronized void setStatisticsEnabled(boolean enabled)
+    {
+        if (enabled && statistics == null)
+        {
+            statistics = new CacheStatistics(this::currentCapacity);
+            statisticsName = MBeans.objectName("CacheStatistics", this);
+            MBeans.register(statisticsName, statistics);
+        }
+        else if (!enabled && statistics != null)
+        {
+            statistics = null;
+            MBeans.unregister(statisticsName);
+        }
+    }
+
+    /**
+     * Capacity of a bounded store, otherwise the number of entries
+     */
+    private long currentCapacity()
+    {
+        return dataStore instanceof BoundedDataStore
+                ? ((BoundedDataStore<K, V>) dataStore).getCapacity()
+                : dataStore.spliterator().estimateSize();
+    }
+
+    DataStore<K, V> getDataStore()
+    {
+        return dataStore;
+    }
+
     @Override
     public boolean isClosed()
     {
         return isClosed;
     }
 
+    /**
+     * Unwrap to SimpleCache, for its extensions to the JSR-107 API, or to the backing DataStore
+     */
     @Override
+    @SuppressWarnings("unchecked")
     public <T> T unwrap(Class<T> clazz)
     {
+        if (clazz.isAssignableFrom(getClass()))
+            return (T) this;
+        if (clazz.isInstance(dataStore))
+            return (T) dataStore;
         throw new IllegalArgumentException("Unwrapping to " + clazz + " is not " + "supported by this implementation");
     }
 
@@ -239,10 +1048,32 @@ public class SimpleCache<K, V> implements Cache<K, V>
                 + " is not " + "supported by this implementation");
     }
 
+    /**
+     * Weakly consistent: entries put or removed during the iteration may or may
+     * not be seen, and iterating does not change the LRU order.
+     */
     @Override
     public Iterator<Entry<K, V>> iterator()
     {
-        throw new IllegalArgumentException("iterator "
-                + " is not " + "supported by this implementation");
+        return Spliterators.iterator(spliterator());
+    }
+
+    @Override
+    public Spliterator<Entry<K, V>> spliterator()
+    {
+        if (isClosed)
+            throw new IllegalStateException();
+
+        return new EntrySpliterator<>(dataStore.spliterator(), tagRegistry::isCurrent);
+    }
+
+    public Stream<Entry<K, V>> stream()
+    {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    public Stream<Entry<K, V>> parallelStream()
+    {
+        return StreamSupport.stream(spliterator(), true);
     }
 }
@@ -0,0 +1,48 @@
+package cache;
+
+import javax.cache.Cache;
+
+/**
+ * Immutable snapshot of a cache entry handed out by iteration
+ * @param <K>: Key type
+ * @param <V>: Value type
+ */
+public class SimpleCacheEntry<K, V> implements Cache.Entry<K, V>
+{
+    private final K key;
+
+    private final V value;
+
+    public SimpleCacheEntry(K key, V value)
+    {
+        this.key = key;
+        this.value = value;
+    }
+
+    @Override
+    public K getKey()
+    {
+        return key;
+    }
+
+    @Override
+    public V getValue()
+    {
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> clazz)
+    {
+        if (clazz.isAssignableFrom(getClass()))
+            return (T) this;
+        throw new IllegalArgumentException("Unwrapping to " + clazz + " is not " + "supported by this implementation");
+    }
+
+    @Override
+    public String toString()
+    {
+        return key + "=" + value;
+    }
+}
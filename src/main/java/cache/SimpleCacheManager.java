@@ -3,7 +3,9 @@ package cache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import store.BasicDataStore;
+import store.BoundedDataStore;
 import store.DataStore;
+import store.FrozenDataStore;
 import store.LRUDataStore;
 import store.WeakRefDataStore;
 
@@ -15,9 +17,11 @@ import javax.cache.spi.CachingProvider;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Manage the Cache entities
@@ -36,7 +40,24 @@ public class SimpleCacheManager implements CacheManager
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CacheManager.class);
 
-    private final Map<String, SimpleCache<?, ?>> caches = new ConcurrentHashMap<>();
+    private final Map<String, Cache<?, ?>> caches = new ConcurrentHashMap<>();
+
+    private final Map<String, List<CacheHandle<?, ?>>> handles = new ConcurrentHashMap<>();
+
+    /**
+     * Resize bounded stores under heap pressure, enabled by the "adaptiveCapacity" property
+     */
+    private final MemoryPressureMonitor memoryMonitor;
+
+    /**
+     * Entries shared by all the caches, enabled by the "memoryBudget" property
+     */
+    private final MemoryBudget memoryBudget;
+
+    /**
+     * Invalidations shared with the other processes of the host, enabled by the "invalidationBus" property
+     */
+    private final InvalidationBus invalidationBus;
 
     public SimpleCacheManager(SimpleCacheProvider cachingProvider, Properties props, ClassLoader classLoader, URI uri)
     {
@@ -45,6 +66,11 @@ public class SimpleCacheManager implements CacheManager
         this.classLoader = classLoader;
         this.isClosed = false;
         this.uri = uri;
+        this.memoryMonitor = Boolean.parseBoolean(props.getProperty("adaptiveCapacity"))
+                ? MemoryPressureMonitor.fromProperties(props) : null;
+        this.memoryBudget = props.containsKey("memoryBudget")
+                ? new MemoryBudget(Long.parseLong(props.getProperty("memoryBudget"))) : null;
+        this.invalidationBus = InvalidationBus.fromProperties(props, new BusTarget(), classLoader);
     }
 
     @Override
@@ -82,11 +108,11 @@ public class SimpleCacheManager implements CacheManager
         checkNotNull(cacheName, "cacheName");
         checkNotNull(configuration, "configuration");
 
-        SimpleCache<?, ?> cache = caches.get(cacheName);
+        Cache<?, ?> cache = caches.get(cacheName);
 
         if (cache == null)
         {
-            cache = new SimpleCache<>(getDataStore(properties), cacheName, this, configuration);
+            cache = newCache(cacheName, configuration);
             caches.put(cache.getName(), cache);
 
             return (Cache<K, V>) cache;
@@ -95,6 +121,19 @@ public class SimpleCacheManager implements CacheManager
             throw new CacheException("A cache named " + cacheName + " already exists.");
     }
 
+    /**
+     * Build the cache entity for createCache, subclasses may back caches by something else than a DataStore
+     */
+    @SuppressWarnings("unchecked")
+    protected <K, V> Cache<K, V> newCache(String cacheName, Configuration<K, V> configuration)
+    {
+        DataStore dataStore = memoryBudget == null ? getDataStore(properties) : getBudgetedDataStore(configuration);
+        if (memoryMonitor != null && dataStore instanceof BoundedDataStore)
+            memoryMonitor.register((BoundedDataStore) dataStore);
+
+        return new SimpleCache<>(dataStore, cacheName, this, configuration);
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public <K, V> Cache<K, V> getCache(String cacheName, Class<K> keyType, Class<V> valueType)
@@ -105,7 +144,7 @@ public class SimpleCacheManager implements CacheManager
         checkNotNull(keyType, "keyType");
         checkNotNull(valueType, "valueType");
 
-        SimpleCache<K, V> cache = (SimpleCache<K, V>) caches.get(cacheName);
+        Cache<K, V> cache = (Cache<K, V>) caches.get(cacheName);
 
         if (cache == null)
             return null;
@@ -132,6 +171,32 @@ public class SimpleCacheManager implements CacheManager
         return (Cache<K, V>) getCache(cacheName, Object.class, Object.class);
     }
 
+    /**
+     * Typed handle on a cache, to keep instead of calling getCache on every request.
+     * The handle may be taken before the cache is created; it follows the cache of this name
+     * across destroyCache and createCache.
+     */
+    @SuppressWarnings("unchecked")
+    public <K, V> CacheHandle<K, V> getCacheHandle(String cacheName, Class<K> keyType, Class<V> valueType)
+    {
+        checkNotNull(cacheName, "cacheName");
+        checkNotNull(keyType, "keyType");
+        checkNotNull(valueType, "valueType");
+
+        List<CacheHandle<?, ?>> named = handles.computeIfAbsent(cacheName, (name) -> new CopyOnWriteArrayList<>());
+        synchronized (named)
+        {
+            for (CacheHandle<?, ?> handle : named)
+            {
+                if (handle.getKeyType() == keyType && handle.getValueType() == valueType)
+                    return (CacheHandle<K, V>) handle;
+            }
+            CacheHandle<K, V> handle = new CacheHandle<>(this, cacheName, keyType, valueType);
+            named.add(handle);
+            return handle;
+        }
+    }
+
     @Override
     public Iterable<String> getCacheNames()
     {
@@ -161,10 +226,22 @@ public class SimpleCacheManager implements CacheManager
         throw new IllegalStateException("enableManagement is not supported by this implementation.");
     }
 
+    /**
+     * Statistics include the miss-ratio curve of the cache, see SimpleCacheStatisticsMXBean
+     */
     @Override
     public void enableStatistics(String cacheName, boolean enabled)
     {
-        throw new IllegalStateException("enableStatistics is not supported by this implementation.");
+        if (isClosed)
+            throw new IllegalStateException();
+
+        checkNotNull(cacheName, "cacheName");
+
+        Cache<?, ?> cache = caches.get(cacheName);
+        if (cache instanceof SimpleCache)
+            ((SimpleCache<?, ?>) cache).setStatisticsEnabled(enabled);
+        else if (cache != null)
+            throw new IllegalStateException("enableStatistics is not supported by " + cache.getClass().getName());
     }
 
     @Override
@@ -176,6 +253,11 @@ public class SimpleCacheManager implements CacheManager
 
             isClosed = true;
 
+            if (memoryMonitor != null)
+                memoryMonitor.close();
+            if (invalidationBus != null)
+                invalidationBus.close();
+
             ArrayList<Cache<?, ?>> cacheList = new ArrayList<Cache<?, ?>>(caches.values());
             caches.clear();
 
@@ -200,8 +282,11 @@ public class SimpleCacheManager implements CacheManager
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public <T> T unwrap(Class<T> clazz)
     {
+        if (clazz.isAssignableFrom(getClass()))
+            return (T) this;
         throw new IllegalArgumentException("Unwrapping to " + clazz + " is not " + "supported by this implementation");
     }
 
@@ -210,7 +295,34 @@ public class SimpleCacheManager implements CacheManager
         if (cacheName == null)
             throw new NullPointerException();
 
-        caches.remove(cacheName);
+        Cache<?, ?> cache = caches.remove(cacheName);
+        List<CacheHandle<?, ?>> named = handles.get(cacheName);
+        if (named != null)
+            named.forEach(CacheHandle::reset);
+        if (cache instanceof SimpleCache && ((SimpleCache<?, ?>) cache).getDataStore() instanceof BoundedDataStore)
+        {
+            BoundedDataStore<?, ?> store = (BoundedDataStore<?, ?>) ((SimpleCache<?, ?>) cache).getDataStore();
+            if (memoryMonitor != null)
+                memoryMonitor.unregister(store);
+            if (memoryBudget != null)
+                memoryBudget.unregister(store);
+        }
+    }
+
+    /**
+     * @return the shared budget, null if the "memoryBudget" property is not set
+     */
+    public MemoryBudget getMemoryBudget()
+    {
+        return memoryBudget;
+    }
+
+    /**
+     * @return the bus the caches publish their writes to, null if the "invalidationBus" property is not set
+     */
+    public InvalidationBus getInvalidationBus()
+    {
+        return invalidationBus;
     }
 
     private void checkNotNull(Object object, String name)
@@ -219,6 +331,25 @@ public class SimpleCacheManager implements CacheManager
             throw new NullPointerException(name + " can not be null");
     }
 
+    /**
+     * With a memory budget, every cache gets an LRU store capped by its maximum share of the budget
+     */
+    private DataStore getBudgetedDataStore(Configuration<?, ?> configuration)
+    {
+        SimpleConfiguration<?, ?> simpleConfiguration = configuration instanceof SimpleConfiguration
+                ? (SimpleConfiguration<?, ?>) configuration : null;
+        double minShare = simpleConfiguration == null ? 0 : simpleConfiguration.getMinBudgetShare();
+        double maxShare = simpleConfiguration == null ? 1 : simpleConfiguration.getMaxBudgetShare();
+
+        long capacity = Math.max(1, (long) (memoryBudget.getBudget() * maxShare));
+        if (properties.containsKey("capacity"))
+            capacity = Math.min(capacity, Long.parseLong(properties.getProperty("capacity")));
+
+        LRUDataStore dataStore = new LRUDataStore(capacity, memoryBudget);
+        memoryBudget.register(dataStore, minShare);
+        return dataStore;
+    }
+
     private DataStore getDataStore(Properties properties)
     {
         if(!properties.containsKey("dataStoreType"))
@@ -229,6 +360,7 @@ public class SimpleCacheManager implements CacheManager
         {
             case "basic": return new BasicDataStore();
             case "weakRef": return new WeakRefDataStore();
+            case "frozen": return new FrozenDataStore();
             case "lru":
             {
                 long capacity = Long.parseLong(properties.getProperty("capacity",
@@ -240,4 +372,45 @@ public class SimpleCacheManager implements CacheManager
 
         return new BasicDataStore();
     }
+
+    /**
+     * Apply the invalidations of the other processes to the caches of the same name
+     */
+    private class BusTarget implements InvalidationBus.Target
+    {
+        @Override
+        @SuppressWarnings("unchecked")
+        public Class<?> keyType(String cacheName)
+        {
+            Cache<?, ?> cache = caches.get(cacheName);
+            return cache instanceof SimpleCache ? cache.getConfiguration(Configuration.class).getKeyType() : null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void invalidateKey(String cacheName, Object key)
+        {
+            Cache<?, ?> cache = caches.get(cacheName);
+            if (cache instanceof SimpleCache)
+                ((SimpleCache<Object, ?>) cache).invalidateLocally(key);
+        }
+
+        @Override
+        public void invalidateTag(String cacheName, Object tag)
+        {
+            Cache<?, ?> cache = caches.get(cacheName);
+            if (cache instanceof SimpleCache)
+                ((SimpleCache<?, ?>) cache).invalidateTagLocally(tag);
+        }
+
+        @Override
+        public void invalidateAll(String cacheName)
+        {
+            for (Cache<?, ?> cache : caches.values())
+            {
+                if (cache instanceof SimpleCache && (cacheName == null || cacheName.equals(cache.getName())))
+                    ((SimpleCache<?, ?>) cache).clearLocally();
+            }
+        }
+    }
 }
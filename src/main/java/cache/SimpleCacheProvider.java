@@ -3,16 +3,20 @@ package cache;
 import javax.cache.CacheManager;
 import javax.cache.configuration.OptionalFeature;
 import javax.cache.spi.CachingProvider;
+import java.lang.ref.WeakReference;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
-import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * Manage the CacheManagers
+ * Manage the CacheManagers.
+ * Managers are registered per class loader in a copy-on-write array of weak entries: lookups scan
+ * the array without locks nor allocation, and registering a class loader copies it.
  */
 public class SimpleCacheProvider implements CachingProvider
 {
@@ -20,8 +24,7 @@ public class SimpleCacheProvider implements CachingProvider
 
     private static final URI URI_DEFAULT;
 
-    // it can make cache-manager distributable..
-    private final Map<ClassLoader, ConcurrentMap<URI, CacheManager>> cacheManagers = new WeakHashMap<>();
+    private final AtomicReference<LoaderEntry[]> cacheManagers = new AtomicReference<>(new LoaderEntry[0]);
 
     static
     {
@@ -38,26 +41,25 @@ public class SimpleCacheProvider implements CachingProvider
     @Override
     public void close()
     {
-        cacheManagers.values().forEach((map) -> map.values().forEach((CacheManager::close)));
+        for (LoaderEntry entry : cacheManagers.get())
+            entry.managers.values().forEach(CacheManager::close);
     }
 
     @Override
     public void close(ClassLoader arg0)
     {
-        if(cacheManagers.containsKey(arg0))
-            cacheManagers.get(arg0).values().forEach(CacheManager::close);
+        ConcurrentMap<URI, CacheManager> managers = managersOf(arg0);
+        if (managers != null)
+            managers.values().forEach(CacheManager::close);
     }
 
     @Override
     public void close(URI arg0, ClassLoader arg1)
     {
-        if(cacheManagers.containsKey(arg1))
-            cacheManagers.get(arg1).forEach (
-                    (uri, cacheManager) -> {
-                        if(uri.equals(arg0))
-                            cacheManager.close();
-                    }
-            );
+        ConcurrentMap<URI, CacheManager> managers = managersOf(arg1);
+        CacheManager cacheManager = managers == null ? null : managers.get(arg0);
+        if (cacheManager != null)
+            cacheManager.close();
     }
 
     @Override
@@ -69,7 +71,7 @@ public class SimpleCacheProvider implements CachingProvider
     @Override
     public CacheManager getCacheManager(URI uri, ClassLoader classLoader)
     {
-        return getCacheManager(uri, classLoader, getDefaultProperties());
+        return getCacheManager(uri, classLoader, null);
     }
 
     @Override
@@ -77,25 +79,24 @@ public class SimpleCacheProvider implements CachingProvider
     {
         uri = uri == null ? getDefaultURI() : uri;
         classLoader = classLoader == null ? getDefaultClassLoader() : classLoader;
-        properties = properties == null ? new Properties() : cloneProperties(properties);
 
-        ConcurrentMap<URI, CacheManager> cacheManagersByURI = cacheManagers.get(classLoader);
+        ConcurrentMap<URI, CacheManager> cacheManagersByURI = managersOf(classLoader);
+        CacheManager cacheManager = cacheManagersByURI == null ? null : cacheManagersByURI.get(uri);
+        if (cacheManager != null)
+            return cacheManager;
 
-        if (cacheManagersByURI == null) {
-            cacheManagersByURI = new ConcurrentHashMap<URI, CacheManager>();
-        }
-
-        CacheManager cacheManager = cacheManagersByURI.get(uri);
-
-        if (cacheManager == null)
-        {
-            cacheManager = new SimpleCacheManager(this, properties, classLoader, uri);
-            cacheManagersByURI.put(uri, cacheManager);
-        }
+        ClassLoader loader = classLoader;
+        Properties managerProperties = properties == null ? getDefaultProperties() : cloneProperties(properties);
+        return managersFor(classLoader).computeIfAbsent(uri,
+                (key) -> newCacheManager(key, loader, managerProperties));
+    }
 
-        if (!cacheManagers.containsKey(classLoader))
-            cacheManagers.put(classLoader, cacheManagersByURI);
-        return cacheManager;
+    /**
+     * Build the manager registered for an URI, subclasses may provide their own manager variant
+     */
+    protected CacheManager newCacheManager(URI uri, ClassLoader classLoader, Properties properties)
+    {
+        return new SimpleCacheManager(this, properties, classLoader, uri);
     }
 
     private static Properties cloneProperties(Properties properties)
@@ -135,13 +136,57 @@ public class SimpleCacheProvider implements CachingProvider
             throw new NullPointerException("uri or classLoader should not be null");
         }
 
-        ConcurrentMap<URI, CacheManager> cacheManagersByURI = cacheManagers.get(classLoader);
-        if (cacheManagersByURI != null) {
+        // the entry of the class loader stays, it goes away with the class loader
+        ConcurrentMap<URI, CacheManager> cacheManagersByURI = managersOf(classLoader);
+        if (cacheManagersByURI != null)
             cacheManagersByURI.remove(uri);
+    }
+
+    /**
+     * @return the managers of the class loader, null if it has none
+     */
+    private ConcurrentMap<URI, CacheManager> managersOf(ClassLoader classLoader)
+    {
+        for (LoaderEntry entry : cacheManagers.get())
+        {
+            if (entry.get() == classLoader)
+                return entry.managers;
+        }
+        return null;
+    }
 
-            if (cacheManagersByURI.size() == 0) {
-                cacheManagers.remove(classLoader);
+    /**
+     * Register the class loader if needed, dropping the entries of collected class loaders
+     */
+    private ConcurrentMap<URI, CacheManager> managersFor(ClassLoader classLoader)
+    {
+        while (true)
+        {
+            LoaderEntry[] current = cacheManagers.get();
+            List<LoaderEntry> live = new ArrayList<>(current.length + 1);
+            for (LoaderEntry entry : current)
+            {
+                ClassLoader loader = entry.get();
+                if (loader == classLoader)
+                    return entry.managers;
+                if (loader != null)
+                    live.add(entry);
             }
+
+            LoaderEntry added = new LoaderEntry(classLoader);
+            live.add(added);
+            if (cacheManagers.compareAndSet(current, live.toArray(new LoaderEntry[0])))
+                return added.managers;
+        }
+    }
+
+    private static final class LoaderEntry extends WeakReference<ClassLoader>
+    {
+        private final ConcurrentMap<URI, CacheManager> managers = new ConcurrentHashMap<>();
+
+        LoaderEntry(ClassLoader classLoader)
+        {
+            super(classLoader);
         }
     }
 }
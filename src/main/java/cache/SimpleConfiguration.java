@@ -0,0 +1,250 @@
+package cache;
+
+import javax.cache.configuration.CompleteConfiguration;
+import javax.cache.configuration.MutableConfiguration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MutableConfiguration plus the settings specific to SimpleCache
+ * @param <K>: Key type
+ * @param <V>: Value type
+ */
+public class SimpleConfiguration<K, V> extends MutableConfiguration<K, V>
+{
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Refresh entries read after this delay since they were written, 0 to disable
+     */
+    private long refreshAfterWriteNanos;
+
+    private int refreshThreads = 2;
+
+    private int refreshQueueSize = 1024;
+
+    /**
+     * Remember keys the loader did not find for this long, 0 to disable
+     */
+    private long negativeCacheTtlNanos;
+
+    private long negativeCacheCapacity = 10000;
+
+    /**
+     * False positive rate of the Bloom filter of existing keys, 0 to disable it
+     */
+    private double bloomFilterFalsePositiveRate;
+
+    /**
+     * Sample one access out of this many for hot key detection, 0 to disable
+     */
+    private int hotKeySampleRate;
+
+    private int hotKeyTopK = 16;
+
+    /**
+     * Number of hot keys copied into per-thread replicas, 0 to disable
+     */
+    private int hotKeyReplicaSize;
+
+    /**
+     * Shares of the memoryBudget of the manager, if it has one
+     */
+    private double minBudgetShare;
+
+    private double maxBudgetShare = 1;
+
+    public SimpleConfiguration()
+    {
+        super();
+    }
+
+    public SimpleConfiguration(CompleteConfiguration<K, V> configuration)
+    {
+        super(configuration);
+
+        if (configuration instanceof SimpleConfiguration)
+        {
+            SimpleConfiguration<K, V> other = (SimpleConfiguration<K, V>) configuration;
+            this.refreshAfterWriteNanos = other.refreshAfterWriteNanos;
+            this.refreshThreads = other.refreshThreads;
+            this.refreshQueueSize = other.refreshQueueSize;
+            this.negativeCacheTtlNanos = other.negativeCacheTtlNanos;
+            this.negativeCacheCapacity = other.negativeCacheCapacity;
+            this.bloomFilterFalsePositiveRate = other.bloomFilterFalsePositiveRate;
+            this.hotKeySampleRate = other.hotKeySampleRate;
+            this.hotKeyTopK = other.hotKeyTopK;
+            this.hotKeyReplicaSize = other.hotKeyReplicaSize;
+            this.minBudgetShare = other.minBudgetShare;
+            this.maxBudgetShare = other.maxBudgetShare;
+        }
+    }
+
+    public long getRefreshAfterWriteNanos()
+    {
+        return refreshAfterWriteNanos;
+    }
+
+    /**
+     * Once an entry is older than the delay, the next get still returns it but triggers
+     * an asynchronous reload through the cache loader. Needs a CacheLoaderFactory.
+     */
+    public SimpleConfiguration<K, V> setRefreshAfterWrite(long duration, TimeUnit unit)
+    {
+        if (duration < 0)
+            throw new IllegalArgumentException("refreshAfterWrite should not be negative: " + duration);
+
+        this.refreshAfterWriteNanos = unit.toNanos(duration);
+        return this;
+    }
+
+    public int getRefreshThreads()
+    {
+        return refreshThreads;
+    }
+
+    public SimpleConfiguration<K, V> setRefreshThreads(int refreshThreads)
+    {
+        if (refreshThreads <= 0)
+            throw new IllegalArgumentException("refreshThreads should be positive: " + refreshThreads);
+
+        this.refreshThreads = refreshThreads;
+        return this;
+    }
+
+    public int getRefreshQueueSize()
+    {
+        return refreshQueueSize;
+    }
+
+    /**
+     * Pending refreshes beyond this bound are dropped, the entry will be refreshed on a later read
+     */
+    public SimpleConfiguration<K, V> setRefreshQueueSize(int refreshQueueSize)
+    {
+        if (refreshQueueSize <= 0)
+            throw new IllegalArgumentException("refreshQueueSize should be positive: " + refreshQueueSize);
+
+        this.refreshQueueSize = refreshQueueSize;
+        return this;
+    }
+
+    public long getNegativeCacheTtlNanos()
+    {
+        return negativeCacheTtlNanos;
+    }
+
+    /**
+     * Keys for which the read-through loader returned nothing are answered as absent,
+     * without calling the loader again, for this long
+     */
+    public SimpleConfiguration<K, V> setNegativeCacheTtl(long duration, TimeUnit unit)
+    {
+        if (duration < 0)
+            throw new IllegalArgumentException("negativeCacheTtl should not be negative: " + duration);
+
+        this.negativeCacheTtlNanos = unit.toNanos(duration);
+        return this;
+    }
+
+    public long getNegativeCacheCapacity()
+    {
+        return negativeCacheCapacity;
+    }
+
+    /**
+     * At most this many absent keys are remembered, the least recently used are forgotten first
+     */
+    public SimpleConfiguration<K, V> setNegativeCacheCapacity(long negativeCacheCapacity)
+    {
+        if (negativeCacheCapacity <= 0)
+            throw new IllegalArgumentException("negativeCacheCapacity should be positive: " + negativeCacheCapacity);
+
+        this.negativeCacheCapacity = negativeCacheCapacity;
+        return this;
+    }
+
+    public double getBloomFilterFalsePositiveRate()
+    {
+        return bloomFilterFalsePositiveRate;
+    }
+
+    /**
+     * Enable the Bloom filter of existing keys, built by SimpleCache.rebuildBloomFilter
+     */
+    public SimpleConfiguration<K, V> setBloomFilterFalsePositiveRate(double bloomFilterFalsePositiveRate)
+    {
+        if (bloomFilterFalsePositiveRate < 0 || bloomFilterFalsePositiveRate >= 1)
+            throw new IllegalArgumentException("bloomFilterFalsePositiveRate should be in [0, 1): "
+                    + bloomFilterFalsePositiveRate);
+
+        this.bloomFilterFalsePositiveRate = bloomFilterFalsePositiveRate;
+        return this;
+    }
+
+    public int getHotKeySampleRate()
+    {
+        return hotKeySampleRate;
+    }
+
+    public int getHotKeyTopK()
+    {
+        return hotKeyTopK;
+    }
+
+    /**
+     * Track the topK most accessed keys, from one get or put out of sampleRate.
+     * They are reported by SimpleCache.getHotKeys and the CacheHotKeys MBean.
+     */
+    public SimpleConfiguration<K, V> setHotKeySampling(int sampleRate, int topK)
+    {
+        if (sampleRate < 0 || topK <= 0)
+            throw new IllegalArgumentException("sampleRate should not be negative and topK should be positive");
+
+        this.hotKeySampleRate = sampleRate;
+        this.hotKeyTopK = topK;
+        return this;
+    }
+
+    public int getHotKeyReplicaSize()
+    {
+        return hotKeyReplicaSize;
+    }
+
+    /**
+     * Copy the hottest keys into a small per-thread table in front of the store, served without
+     * touching shared state; any put or remove of one of them invalidates the copies.
+     * The hot keys come from hot key sampling, enabled with a default rate if not configured.
+     */
+    public SimpleConfiguration<K, V> setHotKeyReplicaSize(int hotKeyReplicaSize)
+    {
+        if (hotKeyReplicaSize < 0)
+            throw new IllegalArgumentException("hotKeyReplicaSize should not be negative: " + hotKeyReplicaSize);
+
+        this.hotKeyReplicaSize = hotKeyReplicaSize;
+        return this;
+    }
+
+    public double getMinBudgetShare()
+    {
+        return minBudgetShare;
+    }
+
+    public double getMaxBudgetShare()
+    {
+        return maxBudgetShare;
+    }
+
+    /**
+     * When the manager has a memoryBudget: other caches never shrink this one below minShare of
+     * the budget, and it never holds more than maxShare of it
+     */
+    public SimpleConfiguration<K, V> setBudgetShare(double minShare, double maxShare)
+    {
+        if (minShare < 0 || maxShare <= 0 || maxShare > 1 || minShare > maxShare)
+            throw new IllegalArgumentException("budget shares should satisfy 0 <= min <= max <= 1");
+
+        this.minBudgetShare = minShare;
+        this.maxBudgetShare = maxShare;
+        return this;
+    }
+}
@@ -0,0 +1,154 @@
+package cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import store.DataStore;
+import store.value.Tags;
+import store.value.ValueHolder;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generation counter per tag. An entry is stamped with the generations of its tags when it is put,
+ * and invalidating a tag only bumps its counter: entries with an older stamp are treated as absent
+ * when read, whatever their number. A background sweep then removes them from the store.
+ */
+class TagRegistry<K, V>
+{
+    private static final Logger LOG = LoggerFactory.getLogger(TagRegistry.class);
+
+    private final String cacheName;
+
+    private final DataStore<K, V> dataStore;
+
+    private final StaleEntryCallback<K, V> callback;
+
+    private final ConcurrentHashMap<Object, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean sweepPending = new AtomicBoolean();
+
+    private volatile ThreadPoolExecutor sweeper;
+
+    TagRegistry(String cacheName, DataStore<K, V> dataStore, StaleEntryCallback<K, V> callback)
+    {
+        this.cacheName = cacheName;
+        this.dataStore = dataStore;
+        this.callback = callback;
+    }
+
+    /**
+     * Read the generations before the entry is written, so an invalidation racing with the put wins
+     */
+    Tags stamp(Object[] tags)
+    {
+        if (tags == null || tags.length == 0)
+            return null;
+
+        Object[] copy = tags.clone();
+        long[] stamped = new long[copy.length];
+        for (int i = 0; i < copy.length; i++)
+        {
+            if (copy[i] == null)
+                throw new NullPointerException("tags can not contain null");
+            stamped[i] = generation(copy[i]).get();
+        }
+        return new Tags(copy, stamped);
+    }
+
+    boolean isCurrent(ValueHolder<?> valueHolder)
+    {
+        Tags tags = valueHolder.tags();
+        if (tags == null)
+            return true;
+
+        for (int i = 0; i < tags.size(); i++)
+        {
+            AtomicLong generation = generations.get(tags.tag(i));
+            if (generation != null && generation.get() != tags.generation(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Constant time: entries of the tag become stale at once and are removed later
+     */
+    void invalidate(Object tag)
+    {
+        if (tag == null)
+            throw new NullPointerException("tag can not be null");
+
+        AtomicLong generation = generations.get(tag);
+        if (generation == null)
+            return;
+        generation.incrementAndGet();
+
+        if (sweepPending.compareAndSet(false, true))
+            sweeper().execute(this::sweep);
+    }
+
+    void shutdown()
+    {
+        ThreadPoolExecutor executor = sweeper;
+        if (executor != null)
+            executor.shutdownNow();
+    }
+
+    private AtomicLong generation(Object tag)
+    {
+        AtomicLong generation = generations.get(tag);
+        return generation != null ? generation : generations.computeIfAbsent(tag, (t) -> new AtomicLong());
+    }
+
+    private void sweep()
+    {
+        // invalidations from now on need another sweep
+        sweepPending.set(false);
+        try
+        {
+            dataStore.spliterator().forEachRemaining((entry) -> {
+                ValueHolder<V> valueHolder = entry.getValue();
+                if (valueHolder != null && !isCurrent(valueHolder))
+                    callback.stale(entry.getKey(), valueHolder);
+            });
+        }
+        catch (RuntimeException e)
+        {
+            LOG.warn("cannot sweep invalidated entries of cache " + cacheName, e);
+        }
+    }
+
+    private ThreadPoolExecutor sweeper()
+    {
+        ThreadPoolExecutor executor = sweeper;
+        if (executor == null)
+        {
+            synchronized (this)
+            {
+                executor = sweeper;
+                if (executor == null)
+                {
+                    executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                            (runnable) -> {
+                                Thread thread = new Thread(runnable, "tag-sweeper-" + cacheName);
+                                thread.setDaemon(true);
+                                return thread;
+                            });
+                    executor.allowCoreThreadTimeOut(true);
+                    sweeper = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    interface StaleEntryCallback<K, V>
+    {
+        void stale(K key, ValueHolder<V> valueHolder);
+    }
+}
@@ -0,0 +1,81 @@
+package cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * ObjectInputStream for bytes read from a store other processes write to: it only resolves the expected
+ * types (with their subclasses and superclasses) and the JDK value classes, so the bytes can not make it
+ * instantiate any other serializable class of the classpath. Proxies are never resolved.
+ *
+ * JDK value classes are the boxed primitives, String, BigInteger, BigDecimal, Date, UUID, enums of
+ * expected types, java.time values and arrays of all these. Object as an expected type adds nothing.
+ */
+public class ValueObjectInputStream extends ObjectInputStream
+{
+    private static final Set<Class<?>> VALUE_CLASSES = new HashSet<>(Arrays.asList(
+            Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class,
+            Float.class, Double.class, Number.class, String.class, BigInteger.class, BigDecimal.class,
+            Date.class, UUID.class, Enum.class));
+
+    private final ClassLoader classLoader;
+
+    private final Class<?>[] expectedTypes;
+
+    public ValueObjectInputStream(InputStream in, ClassLoader classLoader, Class<?>... expectedTypes)
+            throws IOException
+    {
+        super(in);
+        this.classLoader = classLoader;
+        this.expectedTypes = expectedTypes;
+    }
+
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException
+    {
+        Class<?> type;
+        try
+        {
+            type = Class.forName(desc.getName(), false, classLoader);
+        }
+        catch (ClassNotFoundException e)
+        {
+            type = super.resolveClass(desc);
+        }
+
+        if (!isAllowed(type))
+            throw new InvalidClassException(desc.getName(), "not an expected type");
+        return type;
+    }
+
+    @Override
+    protected Class<?> resolveProxyClass(String[] interfaces) throws IOException
+    {
+        throw new InvalidClassException(Arrays.toString(interfaces), "proxies are not deserialized");
+    }
+
+    private boolean isAllowed(Class<?> type)
+    {
+        while (type.isArray())
+            type = type.getComponentType();
+        if (type.isPrimitive() || VALUE_CLASSES.contains(type) || type.getName().startsWith("java.time."))
+            return true;
+
+        for (Class<?> expected : expectedTypes)
+        {
+            if (expected != Object.class && (expected.isAssignableFrom(type) || type.isAssignableFrom(expected)))
+                return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,191 @@
+package cache.stats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters of a cache, with a miss-ratio curve estimated from the keys read.
+ * Evictions are made by the stores and are not counted.
+ */
+public class CacheStatistics implements SimpleCacheStatisticsMXBean
+{
+    private static final double[] CURVE_FACTORS = {0.25, 0.5, 1, 2, 4};
+
+    private static final int CURVE_MAX_KEYS = 8192;
+
+    private final LongSupplier capacity;
+
+    private final MissRatioCurve missRatioCurve = new MissRatioCurve(CURVE_MAX_KEYS);
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder puts = new LongAdder();
+
+    private final LongAdder removals = new LongAdder();
+
+    private final LongAdder getNanos = new LongAdder();
+
+    private final LongAdder putNanos = new LongAdder();
+
+    private final LongAdder removeNanos = new LongAdder();
+
+    /**
+     * @param capacity current capacity of the cache, the curve is evaluated around it
+     */
+    public CacheStatistics(LongSupplier capacity)
+    {
+        this.capacity = capacity;
+    }
+
+    public void recordAccess(Object key)
+    {
+        missRatioCurve.record(key);
+    }
+
+    public void recordHit()
+    {
+        hits.increment();
+    }
+
+    public void recordMiss()
+    {
+        misses.increment();
+    }
+
+    public void recordGetTime(long nanos)
+    {
+        getNanos.add(nanos);
+    }
+
+    public void recordPut(long nanos)
+    {
+        puts.increment();
+        putNanos.add(nanos);
+    }
+
+    public void recordRemoval(long nanos)
+    {
+        removals.increment();
+        removeNanos.add(nanos);
+    }
+
+    public MissRatioCurve getMissRatioCurve()
+    {
+        return missRatioCurve;
+    }
+
+    @Override
+    public void clear()
+    {
+        hits.reset();
+        misses.reset();
+        puts.reset();
+        removals.reset();
+        getNanos.reset();
+        putNanos.reset();
+        removeNanos.reset();
+        missRatioCurve.clear();
+    }
+
+    @Override
+    public long getCacheHits()
+    {
+        return hits.sum();
+    }
+
+    @Override
+    public float getCacheHitPercentage()
+    {
+        long gets = getCacheGets();
+        return gets == 0 ? 0 : getCacheHits() * 100f / gets;
+    }
+
+    @Override
+    public long getCacheMisses()
+    {
+        return misses.sum();
+    }
+
+    @Override
+    public float getCacheMissPercentage()
+    {
+        long gets = getCacheGets();
+        return gets == 0 ? 0 : getCacheMisses() * 100f / gets;
+    }
+
+    @Override
+    public long getCacheGets()
+    {
+        return hits.sum() + misses.sum();
+    }
+
+    @Override
+    public long getCachePuts()
+    {
+        return puts.sum();
+    }
+
+    @Override
+    public long getCacheRemovals()
+    {
+        return removals.sum();
+    }
+
+    @Override
+    public long getCacheEvictions()
+    {
+        return 0;
+    }
+
+    @Override
+    public float getAverageGetTime()
+    {
+        return averageMicros(getNanos, getCacheGets());
+    }
+
+    @Override
+    public float getAveragePutTime()
+    {
+        return averageMicros(putNanos, getCachePuts());
+    }
+
+    @Override
+    public float getAverageRemoveTime()
+    {
+        return averageMicros(removeNanos, getCacheRemovals());
+    }
+
+    @Override
+    public long[] getMissRatioCurveSizes()
+    {
+        long current = Math.max(1, capacity.getAsLong());
+        long[] sizes = new long[CURVE_FACTORS.length];
+        for (int i = 0; i < sizes.length; i++)
+            sizes[i] = Math.max(1, (long) (current * CURVE_FACTORS[i]));
+        return sizes;
+    }
+
+    @Override
+    public float[] getMissRatioCurveHitPercentages()
+    {
+        long[] sizes = getMissRatioCurveSizes();
+        float[] percentages = new float[sizes.length];
+        for (int i = 0; i < sizes.length; i++)
+            percentages[i] = (float) (missRatioCurve.hitRatio(sizes[i]) * 100);
+        return percentages;
+    }
+
+    @Override
+    public double getMissRatioCurveSampleRate()
+    {
+        return missRatioCurve.getSampleRate();
+    }
+
+    private static float averageMicros(LongAdder nanos, long count)
+    {
+        return count == 0 ? 0 : (float) TimeUnit.NANOSECONDS.toMicros(nanos.sum()) / count;
+    }
+}
@@ -0,0 +1,69 @@
+package cache.stats;
+
+/**
+ * Count-min sketch of 4 rows: estimates never undercount, and overcount by at most
+ * about 2/width of the total count with high probability. Not thread-safe.
+ */
+public class CountMinSketch
+{
+    private static final int DEPTH = 4;
+
+    private static final long[] SEEDS = {
+            0x9e3779b97f4a7c15L, 0xc2b2ae3d27d4eb4fL, 0x165667b19e3779f9L, 0xd6e8feb86659fd93L };
+
+    private final long[][] counters;
+
+    private final int mask;
+
+    /**
+     * @param width counters per row, rounded up to a power of two
+     */
+    public CountMinSketch(int width)
+    {
+        int size = 16;
+        while (size < width)
+            size <<= 1;
+        this.counters = new long[DEPTH][size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * @return the new estimate for the hash
+     */
+    public long add(int hash)
+    {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++)
+        {
+            int index = index(hash, row);
+            estimate = Math.min(estimate, ++counters[row][index]);
+        }
+        return estimate;
+    }
+
+    public long estimate(int hash)
+    {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++)
+            estimate = Math.min(estimate, counters[row][index(hash, row)]);
+        return estimate;
+    }
+
+    /**
+     * Halve every counter, so that old traffic fades away
+     */
+    public void age()
+    {
+        for (long[] row : counters)
+        {
+            for (int i = 0; i < row.length; i++)
+                row[i] >>>= 1;
+        }
+    }
+
+    private int index(int hash, int row)
+    {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
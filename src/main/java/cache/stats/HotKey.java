@@ -0,0 +1,37 @@
+package cache.stats;
+
+/**
+ * A heavy hitter of a cache and its estimated number of accesses
+ * @param <K>: Key type
+ */
+public class HotKey<K>
+{
+    private final K key;
+
+    private final long estimatedCount;
+
+    public HotKey(K key, long estimatedCount)
+    {
+        this.key = key;
+        this.estimatedCount = estimatedCount;
+    }
+
+    public K getKey()
+    {
+        return key;
+    }
+
+    /**
+     * Estimated gets and puts of the key since it was last aged, scaled by the sampling rate
+     */
+    public long getEstimatedCount()
+    {
+        return estimatedCount;
+    }
+
+    @Override
+    public String toString()
+    {
+        return key + "=" + estimatedCount;
+    }
+}
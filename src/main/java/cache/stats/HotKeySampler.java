@@ -0,0 +1,147 @@
+package cache.stats;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Find the heavy hitters among the accessed keys with bounded memory: one access out of
+ * sampleRate is fed to a count-min sketch, and a space-saving table keeps the topK keys with
+ * the highest estimates, the minimum being replaced when a key overtakes it.
+ * Counts are halved periodically so that the report follows the current traffic.
+ *
+ * Accesses that are not sampled cost a thread-local random draw; a sampled access that finds
+ * the table busy is dropped rather than waiting, so callers never block.
+ * @param <K>: Key type
+ */
+public class HotKeySampler<K>
+{
+    private static final int SKETCH_WIDTH = 4096;
+
+    private final int sampleRate;
+
+    private final int topK;
+
+    private final CountMinSketch sketch = new CountMinSketch(SKETCH_WIDTH);
+
+    private final Map<K, Counter> candidates = new HashMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final long agingPeriod = SKETCH_WIDTH * 10L;
+
+    private long samplesSinceAging;
+
+    private volatile long samples;
+
+    public HotKeySampler(int sampleRate, int topK)
+    {
+        if (sampleRate <= 0 || topK <= 0)
+            throw new IllegalArgumentException("sampleRate and topK should be positive");
+
+        this.sampleRate = sampleRate;
+        this.topK = topK;
+    }
+
+    public void record(K key)
+    {
+        if (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0)
+            return;
+        if (!lock.tryLock())
+            return;
+
+        try
+        {
+            update(key);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return current heavy hitters, hottest first
+     */
+    public List<HotKey<K>> getHotKeys()
+    {
+        List<HotKey<K>> hotKeys = new ArrayList<>(topK);
+        lock.lock();
+        try
+        {
+            candidates.forEach((key, counter) -> hotKeys.add(new HotKey<>(key, counter.count * sampleRate)));
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        hotKeys.sort((a, b) -> Long.compare(b.getEstimatedCount(), a.getEstimatedCount()));
+        return hotKeys;
+    }
+
+    public long getSampledAccesses()
+    {
+        return samples;
+    }
+
+    public int getSampleRate()
+    {
+        return sampleRate;
+    }
+
+    private void update(K key)
+    {
+        samples++;
+        long estimate = sketch.add(spread(key.hashCode()));
+
+        Counter counter = candidates.get(key);
+        if (counter != null)
+            counter.count = estimate;
+        else if (candidates.size() < topK)
+            candidates.put(key, new Counter(estimate));
+        else
+        {
+            K minKey = null;
+            long min = Long.MAX_VALUE;
+            for (Map.Entry<K, Counter> entry : candidates.entrySet())
+            {
+                if (entry.getValue().count < min)
+                {
+                    min = entry.getValue().count;
+                    minKey = entry.getKey();
+                }
+            }
+            if (estimate > min)
+            {
+                candidates.remove(minKey);
+                candidates.put(key, new Counter(estimate));
+            }
+        }
+
+        if (++samplesSinceAging >= agingPeriod)
+        {
+            samplesSinceAging = 0;
+            sketch.age();
+            candidates.values().forEach((c) -> c.count >>>= 1);
+        }
+    }
+
+    private static int spread(int hash)
+    {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static class Counter
+    {
+        private long count;
+
+        Counter(long count)
+        {
+            this.count = count;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package cache.stats;
+
+import java.util.List;
+
+public class HotKeys implements HotKeysMXBean
+{
+    private final HotKeySampler<?> sampler;
+
+    public HotKeys(HotKeySampler<?> sampler)
+    {
+        this.sampler = sampler;
+    }
+
+    @Override
+    public String[] getHotKeys()
+    {
+        List<? extends HotKey<?>> hotKeys = sampler.getHotKeys();
+        String[] keys = new String[hotKeys.size()];
+        for (int i = 0; i < keys.length; i++)
+            keys[i] = String.valueOf(hotKeys.get(i).getKey());
+        return keys;
+    }
+
+    @Override
+    public long[] getHotKeyCounts()
+    {
+        List<? extends HotKey<?>> hotKeys = sampler.getHotKeys();
+        long[] counts = new long[hotKeys.size()];
+        for (int i = 0; i < counts.length; i++)
+            counts[i] = hotKeys.get(i).getEstimatedCount();
+        return counts;
+    }
+
+    @Override
+    public long getSampledAccesses()
+    {
+        return sampler.getSampledAccesses();
+    }
+
+    @Override
+    public int getSampleRate()
+    {
+        return sampler.getSampleRate();
+    }
+}
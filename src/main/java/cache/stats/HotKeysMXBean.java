@@ -0,0 +1,21 @@
+package cache.stats;
+
+/**
+ * JMX view of the heavy hitters of a cache
+ */
+public interface HotKeysMXBean
+{
+    /**
+     * @return hottest keys first, as strings
+     */
+    String[] getHotKeys();
+
+    /**
+     * @return estimated access counts, in the order of getHotKeys
+     */
+    long[] getHotKeyCounts();
+
+    long getSampledAccesses();
+
+    int getSampleRate();
+}
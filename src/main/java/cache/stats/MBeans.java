@@ -0,0 +1,66 @@
+package cache.stats;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.cache.Cache;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Register the per-cache MBeans on the platform MBean server, named like the JSR-107 ones:
+ * javax.cache:type=...,CacheManager=...,Cache=...
+ */
+public final class MBeans
+{
+    private static final Logger LOG = LoggerFactory.getLogger(MBeans.class);
+
+    private MBeans()
+    {
+    }
+
+    public static ObjectName objectName(String type, Cache<?, ?> cache)
+    {
+        String manager = cache.getCacheManager() == null ? "none" : String.valueOf(cache.getCacheManager().getURI());
+        try
+        {
+            return new ObjectName("javax.cache:type=" + type
+                    + ",CacheManager=" + ObjectName.quote(manager)
+                    + ",Cache=" + ObjectName.quote(cache.getName()));
+        }
+        catch (Exception e)
+        {
+            throw new javax.cache.CacheException(e);
+        }
+    }
+
+    public static void register(ObjectName name, Object mbean)
+    {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try
+        {
+            if (server.isRegistered(name))
+                server.unregisterMBean(name);
+            server.registerMBean(mbean, name);
+        }
+        catch (Exception e)
+        {
+            LOG.warn("cannot register " + name, e);
+        }
+    }
+
+    public static void unregister(ObjectName name)
+    {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try
+        {
+            if (server.isRegistered(name))
+                server.unregisterMBean(name);
+        }
+        catch (Exception e)
+        {
+            LOG.warn("cannot unregister " + name, e);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package cache.stats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Online estimate of the hit ratio an LRU cache would have at any size, from the accessed keys
+ * (SHARDS, fixed-size variant). Only keys whose hash falls under a threshold are tracked; their
+ * reuse distances, i.e. the number of distinct tracked keys accessed since their previous access,
+ * are scaled by the sampling rate into a histogram. When more than maxKeys keys are tracked, the
+ * threshold is lowered and the keys above it dropped, so memory stays bounded whatever the key space.
+ * Sampling starts at 1% by default, so most accesses return before the lock, whatever the cache size.
+ */
+public class MissRatioCurve
+{
+    private static final int MODULUS = 1 << 24;
+
+    public static final double DEFAULT_SAMPLE_RATE = 0.01;
+
+    /**
+     * Histogram buckets per power of two of the reuse distance
+     */
+    private static final int BUCKETS_PER_OCTAVE = 8;
+
+    private static final int BUCKETS = 1 + 48 * BUCKETS_PER_OCTAVE;
+
+    /**
+     * Halve the histogram after this many sampled accesses, so the curve follows the workload
+     */
+    private static final long AGING_PERIOD = 1 << 20;
+
+    private final int maxKeys;
+
+    private volatile int threshold;
+
+    private final Map<Integer, Sampled> sampled = new HashMap<>();
+
+    private final PriorityQueue<Sampled> byHash =
+            new PriorityQueue<>((a, b) -> Integer.compare(b.sampleHash, a.sampleHash));
+
+    /**
+     * Fenwick tree over access times, counting the tracked keys whose last access is at that time
+     */
+    private final int[] tree;
+
+    private int clock;
+
+    private final double[] histogram = new double[BUCKETS];
+
+    private double accesses;
+
+    private long sampledAccesses;
+
+    public MissRatioCurve(int maxKeys)
+    {
+        this(maxKeys, DEFAULT_SAMPLE_RATE);
+    }
+
+    /**
+     * @param sampleRate initial fraction of the keys tracked, lowered once more than maxKeys are tracked
+     */
+    public MissRatioCurve(int maxKeys, double sampleRate)
+    {
+        if (maxKeys <= 0)
+            throw new IllegalArgumentException("maxKeys should be positive: " + maxKeys);
+        if (sampleRate <= 0 || sampleRate > 1)
+            throw new IllegalArgumentException("sampleRate should be in (0, 1]: " + sampleRate);
+
+        this.maxKeys = maxKeys;
+        this.threshold = (int) Math.max(1, MODULUS * sampleRate);
+        this.tree = new int[4 * maxKeys + 1];
+    }
+
+    public void record(Object key)
+    {
+        int hash = hash(key);
+        if ((hash & (MODULUS - 1)) >= threshold)
+            return;
+
+        synchronized (this)
+        {
+            int sampleHash = hash & (MODULUS - 1);
+            if (sampleHash >= threshold)
+                return;
+
+            double weight = (double) MODULUS / threshold;
+            accesses += weight;
+            if (++sampledAccesses % AGING_PERIOD == 0)
+                age();
+
+            if (clock == tree.length - 1)
+                compact();
+            int now = ++clock;
+
+            Sampled entry = sampled.get(hash);
+            if (entry == null)
+            {
+                entry = new Sampled(hash, sampleHash);
+                sampled.put(hash, entry);
+                byHash.add(entry);
+            }
+            else
+            {
+                int distance = sum(now - 1) - sum(entry.time);
+                add(entry.time, -1);
+                histogram[bucket(distance * weight)] += weight;
+            }
+            entry.time = now;
+            add(now, 1);
+
+            if (sampled.size() > maxKeys)
+                lowerThreshold();
+        }
+    }
+
+    /**
+     * @return estimated hit ratio of an LRU cache holding size entries, 0 before any access
+     */
+    public synchronized double hitRatio(long size)
+    {
+        if (accesses == 0)
+            return 0;
+
+        double hits = 0;
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            double low = lowerBound(i);
+            double high = lowerBound(i + 1);
+            if (high <= size)
+                hits += histogram[i];
+            else
+            {
+                // the bucket straddles the size
+                if (size > low)
+                    hits += histogram[i] * (size - low) / (high - low);
+                break;
+            }
+        }
+        return hits / accesses;
+    }
+
+    /**
+     * @return accesses of tracked keys since the creation or the last clear
+     */
+    public synchronized long getSampledAccesses()
+    {
+        return sampledAccesses;
+    }
+
+    /**
+     * @return fraction of the keys currently tracked
+     */
+    public double getSampleRate()
+    {
+        return (double) threshold / MODULUS;
+    }
+
+    public synchronized void clear()
+    {
+        Arrays.fill(histogram, 0);
+        accesses = 0;
+        sampledAccesses = 0;
+    }
+
+    private void lowerThreshold()
+    {
+        threshold = byHash.peek().sampleHash;
+        while (!byHash.isEmpty() && byHash.peek().sampleHash >= threshold)
+        {
+            Sampled dropped = byHash.poll();
+            sampled.remove(dropped.hash);
+            add(dropped.time, -1);
+        }
+    }
+
+    private void age()
+    {
+        for (int i = 0; i < BUCKETS; i++)
+            histogram[i] /= 2;
+        accesses /= 2;
+    }
+
+    /**
+     * Renumber the access times of the tracked keys from 1 once the clock reached the end of the tree
+     */
+    private void compact()
+    {
+        List<Sampled> entries = new ArrayList<>(sampled.values());
+        entries.sort((a, b) -> Integer.compare(a.time, b.time));
+        Arrays.fill(tree, 0);
+        clock = 0;
+        for (Sampled entry : entries)
+        {
+            entry.time = ++clock;
+            add(entry.time, 1);
+        }
+    }
+
+    private void add(int index, int delta)
+    {
+        for (int i = index; i < tree.length; i += i & -i)
+            tree[i] += delta;
+    }
+
+    private int sum(int index)
+    {
+        int sum = 0;
+        for (int i = index; i > 0; i -= i & -i)
+            sum += tree[i];
+        return sum;
+    }
+
+    private static int bucket(double distance)
+    {
+        if (distance < 1)
+            return 0;
+        int bucket = 1 + (int) (Math.log(distance) / Math.log(2) * BUCKETS_PER_OCTAVE);
+        return Math.min(bucket, BUCKETS - 1);
+    }
+
+    private static double lowerBound(int bucket)
+    {
+        return bucket == 0 ? 0 : Math.pow(2, (double) (bucket - 1) / BUCKETS_PER_OCTAVE);
+    }
+
+    private static int hash(Object key)
+    {
+        // murmur3 finalizer, hashCode alone is often sequential
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static class Sampled
+    {
+        /**
+         * Identifies the key, without keeping a reference to it
+         */
+        private final int hash;
+
+        private final int sampleHash;
+
+        private int time;
+
+        Sampled(int hash, int sampleHash)
+        {
+            this.hash = hash;
+            this.sampleHash = sampleHash;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package cache.stats;
+
+import javax.cache.management.CacheStatisticsMXBean;
+
+/**
+ * JSR-107 statistics plus the estimated miss-ratio curve of the cache
+ */
+public interface SimpleCacheStatisticsMXBean extends CacheStatisticsMXBean
+{
+    /**
+     * @return the sizes the curve is evaluated at: 0.25, 0.5, 1, 2 and 4 times the current capacity
+     */
+    long[] getMissRatioCurveSizes();
+
+    /**
+     * @return estimated hit percentage of an LRU cache of each size of getMissRatioCurveSizes
+     */
+    float[] getMissRatioCurveHitPercentages();
+
+    /**
+     * @return fraction of the keys tracked by the estimator
+     */
+    double getMissRatioCurveSampleRate();
+}
@@ -0,0 +1,96 @@
+package client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A cache node of the ring and its persistent connections.
+ * Connections are opened lazily and replaced after an I/O failure.
+ */
+public class CacheNode
+{
+    private static final Logger LOG = LoggerFactory.getLogger(CacheNode.class);
+
+    private final InetSocketAddress address;
+
+    private final int timeoutMillis;
+
+    private final AtomicReferenceArray<NodeConnection> connections;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    public CacheNode(InetSocketAddress address, int connectionCount, int timeoutMillis)
+    {
+        this.address = address;
+        this.timeoutMillis = timeoutMillis;
+        this.connections = new AtomicReferenceArray<>(connectionCount);
+    }
+
+    public InetSocketAddress getAddress()
+    {
+        return address;
+    }
+
+    <T> T execute(NodeOperation<T> operation) throws IOException
+    {
+        int index = (next.getAndIncrement() & Integer.MAX_VALUE) % connections.length();
+        NodeConnection connection = connections.get(index);
+        if (connection == null)
+        {
+            NodeConnection created = new NodeConnection(address, timeoutMillis);
+            if (connections.compareAndSet(index, null, created))
+                connection = created;
+            else
+            {
+                created.close();
+                connection = connections.get(index);
+            }
+        }
+
+        try
+        {
+            return operation.apply(connection);
+        }
+        catch (IOException e)
+        {
+            // the stream state is unknown now, never reuse this connection
+            connections.compareAndSet(index, connection, null);
+            connection.close();
+            throw e;
+        }
+    }
+
+    void close()
+    {
+        for (int i = 0; i < connections.length(); i++)
+        {
+            NodeConnection connection = connections.getAndSet(i, null);
+            if (connection == null)
+                continue;
+            try
+            {
+                connection.close();
+            }
+            catch (IOException e)
+            {
+                LOG.warn("cannot close connection to " + address, e);
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return address.getHostString() + ":" + address.getPort();
+    }
+
+    interface NodeOperation<T>
+    {
+        T apply(NodeConnection connection) throws IOException;
+    }
+}
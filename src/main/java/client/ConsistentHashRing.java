@@ -0,0 +1,84 @@
+package client;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable consistent hash ring: every node is placed at several virtual points,
+ * a key belongs to the first point clockwise of its hash.
+ * Adding or removing one of N nodes only moves about 1/N of the keys.
+ * @param <N>: Node type, its toString() is used to place the virtual points
+ */
+public class ConsistentHashRing<N>
+{
+    private final long[] points;
+
+    private final Object[] owners;
+
+    public ConsistentHashRing(List<N> nodes, int virtualNodes)
+    {
+        if (nodes.isEmpty())
+            throw new IllegalArgumentException("ring needs at least one node");
+        if (virtualNodes <= 0)
+            throw new IllegalArgumentException("virtualNodes should be positive: " + virtualNodes);
+
+        int count = nodes.size() * virtualNodes;
+        long[] sortable = new long[count];
+        Object[] unsorted = new Object[count];
+        int index = 0;
+        for (N node : nodes)
+        {
+            for (int i = 0; i < virtualNodes; i++)
+            {
+                sortable[index] = hash(node + "#" + i);
+                unsorted[index] = node;
+                index++;
+            }
+        }
+
+        // sort points and owners together
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++)
+            order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(sortable[a], sortable[b]));
+
+        this.points = new long[count];
+        this.owners = new Object[count];
+        for (int i = 0; i < count; i++)
+        {
+            points[i] = sortable[order[i]];
+            owners[i] = unsorted[order[i]];
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public N nodeFor(String key)
+    {
+        int index = Arrays.binarySearch(points, hash(key));
+        if (index < 0)
+            index = -index - 1;
+        if (index == points.length)
+            index = 0;
+        return (N) owners[index];
+    }
+
+    /**
+     * 64 bit FNV-1a followed by a murmur finalizer, so that close strings land far apart
+     */
+    static long hash(String s)
+    {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : s.getBytes(StandardCharsets.UTF_8))
+        {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,156 @@
+package client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Persistent blocking connection to one memcached node speaking the text protocol.
+ * Every batch is written in full before the replies are read, so a batch costs one round trip.
+ * Calls are serialized, a node owns several connections to serve concurrent callers.
+ */
+class NodeConnection implements Closeable
+{
+    private static final int KEYS_PER_GET = 100;
+
+    private final Socket socket;
+
+    private final InputStream in;
+
+    private final BufferedOutputStream out;
+
+    NodeConnection(InetSocketAddress address, int timeoutMillis) throws IOException
+    {
+        socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.setSoTimeout(timeoutMillis);
+        socket.connect(address, timeoutMillis);
+        in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+        out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+    }
+
+    synchronized Map<String, byte[]> getMulti(Collection<String> keys) throws IOException
+    {
+        int lines = 0;
+        Iterator<String> iterator = keys.iterator();
+        while (iterator.hasNext())
+        {
+            StringBuilder line = new StringBuilder("get");
+            for (int i = 0; i < KEYS_PER_GET && iterator.hasNext(); i++)
+                line.append(' ').append(iterator.next());
+            writeLine(line.toString());
+            lines++;
+        }
+        out.flush();
+
+        Map<String, byte[]> values = new HashMap<>();
+        while (lines > 0)
+        {
+            String line = readLine();
+            if ("END".equals(line))
+                lines--;
+            else if (line.startsWith("VALUE "))
+            {
+                // VALUE <key> <flags> <bytes>
+                String[] tokens = line.split(" ");
+                byte[] data = new byte[Integer.parseInt(tokens[3])];
+                readFully(data);
+                readLine();
+                values.put(tokens[1], data);
+            }
+            else
+                throw new IOException("unexpected reply to get: " + line);
+        }
+        return values;
+    }
+
+    synchronized void setMulti(Map<String, byte[]> entries) throws IOException
+    {
+        for (Map.Entry<String, byte[]> entry : entries.entrySet())
+        {
+            writeLine("set " + entry.getKey() + " 0 0 " + entry.getValue().length);
+            out.write(entry.getValue());
+            out.write('\r');
+            out.write('\n');
+        }
+        out.flush();
+
+        for (int i = 0; i < entries.size(); i++)
+        {
+            String line = readLine();
+            if (!"STORED".equals(line))
+                throw new IOException("unexpected reply to set: " + line);
+        }
+    }
+
+    /**
+     * @return number of keys which were present
+     */
+    synchronized int deleteMulti(Collection<String> keys) throws IOException
+    {
+        for (String key : keys)
+            writeLine("delete " + key);
+        out.flush();
+
+        int deleted = 0;
+        for (int i = 0; i < keys.size(); i++)
+        {
+            String line = readLine();
+            if ("DELETED".equals(line))
+                deleted++;
+            else if (!"NOT_FOUND".equals(line))
+                throw new IOException("unexpected reply to delete: " + line);
+        }
+        return deleted;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        socket.close();
+    }
+
+    private void writeLine(String line) throws IOException
+    {
+        out.write(line.getBytes(StandardCharsets.US_ASCII));
+        out.write('\r');
+        out.write('\n');
+    }
+
+    private String readLine() throws IOException
+    {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        int b;
+        while ((b = in.read()) != '\n')
+        {
+            if (b < 0)
+                throw new EOFException("connection closed by node");
+            if (b != '\r')
+                line.write(b);
+        }
+        return new String(line.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    private void readFully(byte[] data) throws IOException
+    {
+        int offset = 0;
+        while (offset < data.length)
+        {
+            int n = in.read(data, offset, data.length - offset);
+            if (n < 0)
+                throw new EOFException("connection closed by node");
+            offset += n;
+        }
+    }
+}
@@ -0,0 +1,477 @@
+package client;
+
+import cache.ValueObjectInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.cache.Cache;
+import javax.cache.CacheException;
+import javax.cache.CacheManager;
+import javax.cache.configuration.CacheEntryListenerConfiguration;
+import javax.cache.configuration.Configuration;
+import javax.cache.integration.CompletionListener;
+import javax.cache.processor.EntryProcessor;
+import javax.cache.processor.EntryProcessorException;
+import javax.cache.processor.EntryProcessorResult;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache whose entries live on remote nodes: each key is routed through the consistent hash ring,
+ * multi-key operations are batched per node and the node batches run in parallel.
+ * Keys are sent as "cacheName:g&lt;generation&gt;:key.toString()", values are java-serialized.
+ *
+ * The generation is kept on the nodes under "cacheName:generation": clear() moves the cache to a new
+ * generation, leaving the old entries to expire from the nodes, without touching the other caches
+ * sharing them. Other clients read the generation again after generationRefreshMillis.
+ * @param <K>: Key type
+ * @param <V>: Value type, should be Serializable
+ */
+public class PartitionedCache<K, V> implements Cache<K, V>
+{
+    private static final Logger LOG = LoggerFactory.getLogger(PartitionedCache.class);
+
+    private static final int MAX_KEY_LENGTH = 250;
+
+    private volatile boolean isClosed;
+
+    private final String cacheName;
+
+    private final PartitionedCacheManager cacheManager;
+
+    private final Configuration<K, V> configuration;
+
+    private final ConsistentHashRing<CacheNode> ring;
+
+    private final ExecutorService executor;
+
+    private final String generationKey;
+
+    private final long generationRefreshNanos;
+
+    private volatile Generation generation;
+
+    public PartitionedCache(String cacheName, PartitionedCacheManager cacheManager, Configuration<K, V> configuration,
+                            ConsistentHashRing<CacheNode> ring, ExecutorService executor, long generationRefreshMillis)
+    {
+        this.cacheName = cacheName;
+        this.cacheManager = cacheManager;
+        this.configuration = configuration;
+        this.ring = ring;
+        this.executor = executor;
+        this.generationKey = cacheName + ":generation";
+        this.generationRefreshNanos = TimeUnit.MILLISECONDS.toNanos(generationRefreshMillis);
+    }
+
+    @Override
+    public V get(K key)
+    {
+        String encoded = encodeKey(generation(), key);
+        byte[] data = call(ring.nodeFor(encoded),
+                (connection) -> connection.getMulti(Collections.singletonList(encoded)).get(encoded));
+        return data == null ? null : deserialize(data);
+    }
+
+    @Override
+    public Map<K, V> getAll(Set<? extends K> keys)
+    {
+        long generation = generation();
+        Map<String, K> keysByEncoded = new HashMap<>();
+        Map<CacheNode, List<String>> batches = new HashMap<>();
+        for (K key : keys)
+        {
+            String encoded = encodeKey(generation, key);
+            keysByEncoded.put(encoded, key);
+            batches.computeIfAbsent(ring.nodeFor(encoded), (node) -> new ArrayList<>()).add(encoded);
+        }
+
+        Map<K, V> result = new HashMap<>();
+        for (Map<String, byte[]> values : fanOut(batches, NodeConnection::getMulti))
+            values.forEach((encoded, data) -> result.put(keysByEncoded.get(encoded), deserialize(data)));
+        return result;
+    }
+
+    @Override
+    public boolean containsKey(K key)
+    {
+        return get(key) != null;
+    }
+
+    @Override
+    public void loadAll(Set<? extends K> keys, boolean replaceExistingValues, CompletionListener completionListener)
+    {
+        throw new IllegalArgumentException("loadAll to " + keys + " is not " + "supported by this implementation");
+    }
+
+    @Override
+    public void put(K key, V value)
+    {
+        putAll(Collections.singletonMap(key, value));
+    }
+
+    @Override
+    public V getAndPut(K key, V value)
+    {
+        V oldValue = get(key);
+        put(key, value);
+        return oldValue;
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map)
+    {
+        long generation = generation();
+        Map<CacheNode, Map<String, byte[]>> batches = new HashMap<>();
+        map.forEach((key, value) -> {
+            String encoded = encodeKey(generation, key);
+            batches.computeIfAbsent(ring.nodeFor(encoded), (node) -> new LinkedHashMap<>())
+                    .put(encoded, serialize(value));
+        });
+
+        fanOut(batches, (connection, batch) -> {
+            connection.setMulti(batch);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean putIfAbsent(K key, V value)
+    {
+        throw new IllegalArgumentException("putIfAbsent for " + key
+                + " is not " + "supported by this implementation");
+    }
+
+    @Override
+    public boolean remove(K key)
+    {
+        String encoded = encodeKey(generation(), key);
+        return call(ring.nodeFor(encoded),
+                (connection) -> connection.deleteMulti(Collections.singletonList(encoded))) > 0;
+    }
+
+    @Override
+    public boolean remove(K key, V oldValue)
+    {
+        LOG.warn("remove(K, V) is the same as remove(K)!");
+        return remove(key);
+    }
+
+    @Override
+    public V getAndRemove(K key)
+    {
+        V value = get(key);
+        remove(key);
+        return value;
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue)
+    {
+        throw new IllegalArgumentException("replace for " + key
+                + " is not " + "supported by this implementation");
+    }
+
+    @Override
+    public boolean replace(K key, V value)
+    {
+        throw new IllegalArgumentException("replace for " + key
+                + " is not " + "supported by this implementation");
+    }
+
+    @Override
+    public V getAndReplace(K key, V value)
+    {
+        throw new IllegalArgumentException("getAndReplace for " + key
+                + " is not " + "supported by this implementation");
+    }
+
+    @Override
+    public void removeAll(Set<? extends K> keys)
+    {
+        long generation = generation();
+        Map<CacheNode, List<String>> batches = new HashMap<>();
+        for (K key : keys)
+        {
+            String encoded = encodeKey(generation, key);
+            batches.computeIfAbsent(ring.nodeFor(encoded), (node) -> new ArrayList<>()).add(encoded);
+        }
+        fanOut(batches, NodeConnection::deleteMulti);
+    }
+
+    @Override
+    public void removeAll()
+    {
+        clear();
+    }
+
+    /**
+     * Move to a new generation: the entries of the cache are not found any more
+     */
+    @Override
+    public void clear()
+    {
+        if (isClosed)
+            throw new IllegalStateException();
+
+        long next = Math.max(readGeneration() + 1, System.currentTimeMillis());
+        writeGeneration(next);
+        generation = new Generation(next, System.nanoTime());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <C extends Configuration<K, V>> C getConfiguration(Class<C> clazz)
+    {
+        return (C) configuration;
+    }
+
+    @Override
+    public <T>
+        T invoke(K key, EntryProcessor<K, V, T> entryProcessor, Object... arguments) throws EntryProcessorException
+    {
+        throw new IllegalArgumentException("invoke by " + key + " is not " + "supported by this implementation");
+    }
+
+    @Override
+    public <T> Map<K, EntryProcessorResult<T>>
+        invokeAll(Set<? extends K> keys, EntryProcessor<K, V, T> entryProcessor, Object... arguments)
+    {
+        throw new IllegalArgumentException("invoke by " + keys + " is not " + "supported by this implementation");
+    }
+
+    @Override
+    public String getName()
+    {
+        return cacheName;
+    }
+
+    @Override
+    public CacheManager getCacheManager()
+    {
+        return cacheManager;
+    }
+
+    /**
+     * Only detach the cache from its manager, the remote entries are kept
+     */
+    @Override
+    public void close()
+    {
+        if (!isClosed)
+        {
+            isClosed = true;
+            cacheManager.releaseCache(cacheName);
+        }
+    }
+
+    @Override
+    public boolean isClosed()
+    {
+        return isClosed;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> clazz)
+    {
+        if (clazz.isAssignableFrom(getClass()))
+            return (T) this;
+        throw new IllegalArgumentException("Unwrapping to " + clazz + " is not " + "supported by this implementation");
+    }
+
+    @Override
+    public void registerCacheEntryListener(CacheEntryListenerConfiguration<K, V> cacheEntryListenerConfiguration)
+    {
+        throw new IllegalArgumentException("registerCacheEntryListener by " + cacheEntryListenerConfiguration
+                + " is not " + "supported by this implementation");
+    }
+
+    @Override
+    public void deregisterCacheEntryListener(CacheEntryListenerConfiguration<K, V> cacheEntryListenerConfiguration)
+    {
+        throw new IllegalArgumentException("deregisterCacheEntryListener by " + cacheEntryListenerConfiguration
+                + " is not " + "supported by this implementation");
+    }
+
+    @Override
+    public Iterator<Entry<K, V>> iterator()
+    {
+        throw new IllegalArgumentException("iterator "
+                + " is not " + "supported by this implementation");
+    }
+
+    /**
+     * Run one batch per node, in parallel when several nodes are involved
+     */
+    private <B, R> List<R> fanOut(Map<CacheNode, B> batches, BatchOperation<B, R> operation)
+    {
+        if (isClosed)
+            throw new IllegalStateException();
+
+        List<R> results = new ArrayList<>(batches.size());
+        if (batches.size() == 1)
+        {
+            Map.Entry<CacheNode, B> batch = batches.entrySet().iterator().next();
+            results.add(call(batch.getKey(), (connection) -> operation.apply(connection, batch.getValue())));
+            return results;
+        }
+
+        List<Future<R>> futures = new ArrayList<>(batches.size());
+        batches.forEach((node, batch) ->
+                futures.add(executor.submit(() -> call(node, (connection) -> operation.apply(connection, batch)))));
+        try
+        {
+            for (Future<R> future : futures)
+                results.add(future.get());
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new CacheException(e);
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof CacheException)
+                throw (CacheException) e.getCause();
+            throw new CacheException(e.getCause());
+        }
+        return results;
+    }
+
+    private <T> T call(CacheNode node, CacheNode.NodeOperation<T> operation)
+    {
+        try
+        {
+            return node.execute(operation);
+        }
+        catch (IOException e)
+        {
+            throw new CacheException("cache node " + node + " failed", e);
+        }
+    }
+
+    /**
+     * @return the current generation, read from the nodes at most once per refresh period
+     */
+    private long generation()
+    {
+        Generation current = generation;
+        if (current != null && System.nanoTime() - current.readNanos < generationRefreshNanos)
+            return current.value;
+
+        long value = readGeneration();
+        generation = new Generation(value, System.nanoTime());
+        return value;
+    }
+
+    /**
+     * A cache without a generation on the nodes, or whose generation was evicted, starts a new one:
+     * the clock keeps it ahead of the generations used before
+     */
+    private long readGeneration()
+    {
+        byte[] data = call(ring.nodeFor(generationKey),
+                (connection) -> connection.getMulti(Collections.singletonList(generationKey)).get(generationKey));
+        if (data != null)
+            return Long.parseLong(new String(data, StandardCharsets.US_ASCII));
+
+        long value = System.currentTimeMillis();
+        writeGeneration(value);
+        return value;
+    }
+
+    private void writeGeneration(long value)
+    {
+        byte[] data = Long.toString(value).getBytes(StandardCharsets.US_ASCII);
+        call(ring.nodeFor(generationKey), (connection) -> {
+            connection.setMulti(Collections.singletonMap(generationKey, data));
+            return null;
+        });
+    }
+
+    private String encodeKey(long generation, K key)
+    {
+        if (key == null)
+            throw new NullPointerException("key can not be null");
+
+        String encoded = cacheName + ":g" + generation + ":" + key;
+        if (encoded.length() > MAX_KEY_LENGTH)
+            throw new IllegalArgumentException("key is too long: " + encoded);
+        for (int i = 0; i < encoded.length(); i++)
+        {
+            char c = encoded.charAt(i);
+            if (c <= ' ' || c >= 0x7f)
+                throw new IllegalArgumentException("key should be printable ascii without spaces: " + encoded);
+        }
+        return encoded;
+    }
+
+    private byte[] serialize(V value)
+    {
+        if (value == null)
+            throw new NullPointerException("value can not be null");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+        {
+            out.writeObject(value);
+        }
+        catch (IOException e)
+        {
+            throw new CacheException("cannot serialize " + value, e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Anyone able to write to the nodes chooses the bytes: only the value type of the configuration
+     * and the JDK value classes are deserialized
+     */
+    @SuppressWarnings("unchecked")
+    private V deserialize(byte[] data)
+    {
+        try (ObjectInputStream in = new ValueObjectInputStream(new ByteArrayInputStream(data),
+                cacheManager.getClassLoader(), configuration.getValueType()))
+        {
+            return (V) in.readObject();
+        }
+        catch (IOException | ClassNotFoundException e)
+        {
+            throw new CacheException("cannot deserialize value", e);
+        }
+    }
+
+    private static final class Generation
+    {
+        private final long value;
+
+        private final long readNanos;
+
+        Generation(long value, long readNanos)
+        {
+            this.value = value;
+            this.readNanos = readNanos;
+        }
+    }
+
+    private interface BatchOperation<B, R>
+    {
+        R apply(NodeConnection connection, B batch) throws IOException;
+    }
+}
@@ -0,0 +1,91 @@
+package client;
+
+import cache.SimpleCacheManager;
+import cache.SimpleCacheProvider;
+
+import javax.cache.Cache;
+import javax.cache.configuration.Configuration;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Manage caches spread over a consistent hash ring of cache nodes.
+ * Properties: nodes, virtualNodes (default 160), connectionsPerNode (default 2), timeoutMillis (default 3000),
+ * generationRefreshMillis (default 1000)
+ */
+public class PartitionedCacheManager extends SimpleCacheManager
+{
+    private final List<CacheNode> nodes = new ArrayList<>();
+
+    private final ConsistentHashRing<CacheNode> ring;
+
+    /**
+     * Fans multi-node batches out so that each node is queried in parallel
+     */
+    private final ExecutorService executor;
+
+    /**
+     * How long the caches trust the generation they read, before another client's clear is seen
+     */
+    private final long generationRefreshMillis;
+
+    public PartitionedCacheManager(SimpleCacheProvider cachingProvider, Properties props,
+                                   ClassLoader classLoader, URI uri)
+    {
+        super(cachingProvider, props, classLoader, uri);
+
+        String nodeList = props.getProperty("nodes");
+        if (nodeList == null && "memcached".equals(uri.getScheme()))
+            nodeList = uri.getAuthority();
+        if (nodeList == null || nodeList.trim().isEmpty())
+            throw new IllegalArgumentException("no cache node is configured for " + uri);
+
+        int connections = Integer.parseInt(props.getProperty("connectionsPerNode", "2"));
+        int timeout = Integer.parseInt(props.getProperty("timeoutMillis", "3000"));
+        for (String node : nodeList.split(","))
+            nodes.add(new CacheNode(parseAddress(node.trim()), connections, timeout));
+
+        this.generationRefreshMillis = Long.parseLong(props.getProperty("generationRefreshMillis", "1000"));
+        this.ring = new ConsistentHashRing<>(nodes, Integer.parseInt(props.getProperty("virtualNodes", "160")));
+        this.executor = Executors.newCachedThreadPool((runnable) -> {
+            Thread thread = new Thread(runnable, "partitioned-cache-" + uri);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    protected <K, V> Cache<K, V> newCache(String cacheName, Configuration<K, V> configuration)
+    {
+        return new PartitionedCache<>(cacheName, this, configuration, ring, executor, generationRefreshMillis);
+    }
+
+    public List<CacheNode> getNodes()
+    {
+        return nodes;
+    }
+
+    @Override
+    public void close()
+    {
+        if (isClosed())
+            return;
+
+        super.close();
+        nodes.forEach(CacheNode::close);
+        executor.shutdown();
+    }
+
+    private static InetSocketAddress parseAddress(String node)
+    {
+        int colon = node.lastIndexOf(':');
+        if (colon < 0)
+            return new InetSocketAddress(node, 11211);
+        return new InetSocketAddress(node.substring(0, colon), Integer.parseInt(node.substring(colon + 1)));
+    }
+}
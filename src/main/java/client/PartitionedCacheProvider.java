@@ -0,0 +1,25 @@
+package client;
+
+import cache.SimpleCacheProvider;
+
+import javax.cache.CacheManager;
+import java.net.URI;
+import java.util.Properties;
+
+/**
+ * Provide managers whose caches are partitioned over remote memcached nodes
+ * (see {@link server.MemcachedServer}). Managers are keyed by URI like the simple provider;
+ * the nodes come from the "nodes" property ("host:port,host:port") or, when missing,
+ * from the authority of a memcached URI such as memcached://host1:11211,host2:11211
+ *
+ * This provider is not registered as a service: instantiate it directly, since loading it
+ * through Caching.getCachingProvider(String) makes Caching.getCachingProvider() ambiguous.
+ */
+public class PartitionedCacheProvider extends SimpleCacheProvider
+{
+    @Override
+    protected CacheManager newCacheManager(URI uri, ClassLoader classLoader, Properties properties)
+    {
+        return new PartitionedCacheManager(this, properties, classLoader, uri);
+    }
+}
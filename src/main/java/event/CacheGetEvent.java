@@ -0,0 +1,28 @@
+package event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+@Name("simplecache.Get")
+@Label("Cache Get")
+@Description("A get slower than the threshold")
+@Category(Events.CATEGORY)
+@Enabled(false)
+@Threshold("1 ms")
+@StackTrace(false)
+public class CacheGetEvent extends jdk.jfr.Event
+{
+    @Label("Cache")
+    public String cache;
+
+    @Label("Key")
+    public String key;
+
+    @Label("Hit")
+    public boolean hit;
+}
@@ -0,0 +1,52 @@
+package event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+@Name("simplecache.Loader")
+@Label("Cache Loader Call")
+@Description("A call to the CacheLoader, for a read-through, a refresh or a loadAll")
+@Category(Events.CATEGORY)
+@Enabled(false)
+@Threshold("0 ms")
+@StackTrace(false)
+public class CacheLoaderEvent extends jdk.jfr.Event
+{
+    @Label("Cache")
+    public String cache;
+
+    @Label("Key")
+    @Description("Loaded key, or the first key of a bulk load")
+    public String key;
+
+    @Label("Requested Keys")
+    public int requested;
+
+    @Label("Found Keys")
+    public int found;
+
+    @Label("Refresh")
+    public boolean refresh;
+
+    /**
+     * End the event, and commit it if it is enabled and over the threshold
+     */
+    public void complete(String cache, Object key, int requested, int found, boolean refresh)
+    {
+        end();
+        if (shouldCommit())
+        {
+            this.cache = cache;
+            this.key = String.valueOf(key);
+            this.requested = requested;
+            this.found = found;
+            this.refresh = refresh;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+@Name("simplecache.Put")
+@Label("Cache Put")
+@Description("A put slower than the threshold")
+@Category(Events.CATEGORY)
+@Enabled(false)
+@Threshold("1 ms")
+@StackTrace(false)
+public class CachePutEvent extends jdk.jfr.Event
+{
+    @Label("Cache")
+    public String cache;
+
+    @Label("Key")
+    public String key;
+}
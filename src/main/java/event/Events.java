@@ -0,0 +1,32 @@
+package event;
+
+/**
+ * Flight Recorder events of the cache. Every event is disabled by default and can be turned on
+ * (with its threshold) in a recording configuration, e.g. -XX:StartFlightRecording:settings=my.jfc
+ *
+ * Event classes are only touched when {@link #AVAILABLE}, so the cache still runs on JVMs
+ * without the jdk.jfr API.
+ */
+public final class Events
+{
+    public static final String CATEGORY = "SimpleCache";
+
+    public static final boolean AVAILABLE = isAvailable();
+
+    private Events()
+    {
+    }
+
+    private static boolean isAvailable()
+    {
+        try
+        {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        }
+        catch (Throwable e)
+        {
+            return false;
+        }
+    }
+}
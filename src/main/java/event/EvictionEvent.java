@@ -0,0 +1,30 @@
+package event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("simplecache.Eviction")
+@Label("Cache Eviction")
+@Description("Entries evicted from a bounded store in one go")
+@Category(Events.CATEGORY)
+@Enabled(false)
+@StackTrace(false)
+public class EvictionEvent extends jdk.jfr.Event
+{
+    @Label("Store")
+    public String store;
+
+    @Label("Evicted Entries")
+    public long evicted;
+
+    @Label("Capacity")
+    public long capacity;
+
+    @Label("Reason")
+    @Description("capacity: room for an insert, resize: the capacity was lowered, budget: room in a shared budget")
+    public String reason;
+}
@@ -0,0 +1,20 @@
+package event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+@Name("simplecache.LockContention")
+@Label("Cache Lock Contention")
+@Description("Wait for the lock of a store which was held by another thread")
+@Category(Events.CATEGORY)
+@Enabled(false)
+@Threshold("10 us")
+public class LockContentionEvent extends jdk.jfr.Event
+{
+    @Label("Store")
+    public String store;
+}
@@ -0,0 +1,58 @@
+package server;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of fixed size direct buffers, so socket reads and writes never go through
+ * the temporary direct buffer copy the JDK makes for heap buffers.
+ */
+public class BufferPool
+{
+    private final int bufferSize;
+
+    private final int maxPooled;
+
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+    public BufferPool(int bufferSize, int maxPooled)
+    {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    public int getBufferSize()
+    {
+        return bufferSize;
+    }
+
+    public ByteBuffer acquire()
+    {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null)
+            return ByteBuffer.allocateDirect(bufferSize);
+
+        pooled.decrementAndGet();
+        ((Buffer) buffer).clear();
+        return buffer;
+    }
+
+    /**
+     * Give a buffer back, buffers not created by this pool are dropped
+     */
+    public void release(ByteBuffer buffer)
+    {
+        if (buffer == null || !buffer.isDirect() || buffer.capacity() != bufferSize)
+            return;
+
+        if (pooled.incrementAndGet() <= maxPooled)
+            buffers.offer(buffer);
+        else
+            pooled.decrementAndGet();
+    }
+}
@@ -0,0 +1,592 @@
+package server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.cache.Cache;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+
+/**
+ * One client connection, owned by a single event loop thread.
+ * Every complete request found in a read is handled before the responses are flushed
+ * with a single gathering write, so pipelined requests cost one syscall per batch.
+ * Both the memcached text protocol and the binary protocol (requests starting with
+ * the 0x80 magic byte) are understood, and may be mixed on the same connection.
+ */
+class Connection
+{
+    private static final Logger LOG = LoggerFactory.getLogger(Connection.class);
+
+    private static final int MAX_KEY_LENGTH = 250;
+
+    private static final int MAX_LINE_LENGTH = 2048;
+
+    private static final int MAX_VALUE_LENGTH = 1024 * 1024;
+
+    private static final int BINARY_HEADER_LENGTH = 24;
+
+    /**
+     * Requests are not read nor handled while more response bytes than this wait to be written
+     */
+    private static final int MAX_OUTPUT_BACKLOG = 1024 * 1024;
+
+    private static final int REQUEST_MAGIC = 0x80;
+
+    private static final int RESPONSE_MAGIC = 0x81;
+
+    private static final byte OP_GET = 0x00;
+    private static final byte OP_SET = 0x01;
+    private static final byte OP_DELETE = 0x04;
+    private static final byte OP_QUIT = 0x07;
+    private static final byte OP_GETQ = 0x09;
+    private static final byte OP_NOOP = 0x0a;
+    private static final byte OP_VERSION = 0x0b;
+    private static final byte OP_GETK = 0x0c;
+    private static final byte OP_GETKQ = 0x0d;
+    private static final byte OP_SETQ = 0x11;
+    private static final byte OP_DELETEQ = 0x14;
+    private static final byte OP_QUITQ = 0x17;
+
+    private static final short STATUS_OK = 0x00;
+    private static final short STATUS_NOT_FOUND = 0x01;
+    private static final short STATUS_INVALID_ARGUMENTS = 0x04;
+    private static final short STATUS_UNKNOWN_COMMAND = 0x81;
+
+    private static final byte[] CRLF = ascii("\r\n");
+    private static final byte[] END = ascii("END\r\n");
+    private static final byte[] STORED = ascii("STORED\r\n");
+    private static final byte[] DELETED = ascii("DELETED\r\n");
+    private static final byte[] NOT_FOUND = ascii("NOT_FOUND\r\n");
+    private static final byte[] ERROR = ascii("ERROR\r\n");
+    private static final byte[] OK = ascii("OK\r\n");
+    private static final byte[] VERSION = ascii("VERSION " + MemcachedServer.VERSION + "\r\n");
+    private static final byte[] VALUE = ascii("VALUE ");
+
+    private final SocketChannel channel;
+
+    private final Cache<String, MemcachedItem> cache;
+
+    private final BufferPool pool;
+
+    private SelectionKey selectionKey;
+
+    /**
+     * Kept in write mode between reads
+     */
+    private ByteBuffer readBuffer;
+
+    /**
+     * Flipped buffers waiting to be written, in order
+     */
+    private final ArrayDeque<ByteBuffer> output = new ArrayDeque<>();
+
+    /**
+     * Bytes remaining in the output buffers
+     */
+    private long outputBytes;
+
+    /**
+     * Buffer responses are currently encoded into
+     */
+    private ByteBuffer current;
+
+    private boolean closeAfterFlush;
+
+    private boolean closed;
+
+    Connection(SocketChannel channel, Cache<String, MemcachedItem> cache, BufferPool pool)
+    {
+        this.channel = channel;
+        this.cache = cache;
+        this.pool = pool;
+        this.readBuffer = pool.acquire();
+    }
+
+    void setSelectionKey(SelectionKey selectionKey)
+    {
+        this.selectionKey = selectionKey;
+    }
+
+    void onReadable() throws IOException
+    {
+        if (channel.read(readBuffer) < 0)
+        {
+            close();
+            return;
+        }
+
+        processBuffered();
+    }
+
+    void onWritable() throws IOException
+    {
+        flush();
+        // requests left unhandled while the client was not reading its responses
+        if (!closed && !isBackedUp() && readBuffer.position() > 0)
+            processBuffered();
+    }
+
+    void close()
+    {
+        if (closed)
+            return;
+
+        closed = true;
+        if (selectionKey != null)
+            selectionKey.cancel();
+        try
+        {
+            channel.close();
+        }
+        catch (IOException e)
+        {
+            LOG.warn("cannot close connection", e);
+        }
+
+        pool.release(readBuffer);
+        pool.release(current);
+        output.forEach(pool::release);
+        readBuffer = null;
+        current = null;
+        output.clear();
+    }
+
+    /**
+     * Handle the complete requests read so far, stopping early while the client does not read
+     * its responses: the rest stays in the read buffer until the backlog is written
+     */
+    private void processBuffered() throws IOException
+    {
+        boolean stopped;
+        do
+        {
+            ((Buffer) readBuffer).flip();
+            while (readBuffer.hasRemaining() && !closeAfterFlush && !isBackedUp() && process())
+                ;
+            stopped = readBuffer.hasRemaining() && !closeAfterFlush && isBackedUp();
+            readBuffer.compact();
+            if (!closed && !isBackedUp())
+                resizeReadBuffer();
+
+            flush();
+        }
+        // the client may have nothing left to send: go on as long as the write drained the backlog
+        while (stopped && !closed && !isBackedUp());
+    }
+
+    private boolean isBackedUp()
+    {
+        return outputBytes + (current == null ? 0 : current.position()) > MAX_OUTPUT_BACKLOG;
+    }
+
+    /**
+     * Grow the read buffer when a single request does not fit in it,
+     * and go back to a pooled buffer once the large request has been consumed.
+     */
+    private void resizeReadBuffer()
+    {
+        if (!readBuffer.hasRemaining())
+        {
+            if (readBuffer.capacity() >= MAX_VALUE_LENGTH * 2)
+            {
+                LOG.warn("request too large, closing connection");
+                close();
+                return;
+            }
+
+            ByteBuffer larger = ByteBuffer.allocate(readBuffer.capacity() * 2);
+            ((Buffer) readBuffer).flip();
+            larger.put(readBuffer);
+            pool.release(readBuffer);
+            readBuffer = larger;
+        }
+        else if (readBuffer.position() == 0 && readBuffer.capacity() != pool.getBufferSize())
+            readBuffer = pool.acquire();
+    }
+
+    private void flush() throws IOException
+    {
+        if (closed)
+            return;
+
+        if (current != null && current.position() > 0)
+            queueCurrent();
+
+        if (!output.isEmpty())
+        {
+            outputBytes -= channel.write(output.toArray(new ByteBuffer[output.size()]));
+            while (!output.isEmpty() && !output.peek().hasRemaining())
+                pool.release(output.poll());
+        }
+
+        // stop reading requests while the client does not read the responses
+        if (!output.isEmpty())
+            selectionKey.interestOps(isBackedUp()
+                    ? SelectionKey.OP_WRITE : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        else if (closeAfterFlush)
+            close();
+        else
+            selectionKey.interestOps(SelectionKey.OP_READ);
+    }
+
+    /**
+     * Handle the request at the read position.
+     * @return false if the request is not complete yet, leaving the position untouched
+     */
+    private boolean process()
+    {
+        if ((readBuffer.get(readBuffer.position()) & 0xff) == REQUEST_MAGIC)
+            return processBinary();
+        return processText();
+    }
+
+    // ---------------------------------------------------------------- text protocol
+
+    private boolean processText()
+    {
+        int start = readBuffer.position();
+        int lineEnd = -1;
+        for (int i = start; i < readBuffer.limit(); i++)
+        {
+            if (readBuffer.get(i) == '\n')
+            {
+                lineEnd = i;
+                break;
+            }
+        }
+
+        if (lineEnd < 0)
+        {
+            if (readBuffer.remaining() > MAX_LINE_LENGTH)
+            {
+                writeBytes(ascii("CLIENT_ERROR line too long\r\n"));
+                closeAfterFlush = true;
+            }
+            return false;
+        }
+
+        int lineLength = lineEnd - start;
+        if (lineLength > 0 && readBuffer.get(lineEnd - 1) == '\r')
+            lineLength--;
+        String[] tokens = tokenize(readAscii(start, lineLength));
+        int next = lineEnd + 1;
+
+        switch (tokens[0])
+        {
+            case "get":
+            case "gets":
+                ((Buffer) readBuffer).position(next);
+                for (int i = 1; i < tokens.length; i++)
+                    writeValue(tokens[i], tokens[0].equals("gets"));
+                writeBytes(END);
+                return true;
+            case "set":
+                return processSet(tokens, next);
+            case "delete":
+                ((Buffer) readBuffer).position(next);
+                processDelete(tokens);
+                return true;
+            case "flush_all":
+                ((Buffer) readBuffer).position(next);
+                cache.clear();
+                if (!isNoReply(tokens, tokens.length - 1))
+                    writeBytes(OK);
+                return true;
+            case "version":
+                ((Buffer) readBuffer).position(next);
+                writeBytes(VERSION);
+                return true;
+            case "quit":
+                ((Buffer) readBuffer).position(next);
+                closeAfterFlush = true;
+                return true;
+            default:
+                ((Buffer) readBuffer).position(next);
+                writeBytes(ERROR);
+                return true;
+        }
+    }
+
+    private static String[] tokenize(String line)
+    {
+        int count = 0;
+        for (int i = 0; i < line.length(); i++)
+        {
+            if (line.charAt(i) != ' ' && (i == 0 || line.charAt(i - 1) == ' '))
+                count++;
+        }
+
+        String[] tokens = new String[Math.max(count, 1)];
+        tokens[0] = "";
+        int index = 0;
+        int i = 0;
+        while (i < line.length())
+        {
+            while (i < line.length() && line.charAt(i) == ' ')
+                i++;
+            int begin = i;
+            while (i < line.length() && line.charAt(i) != ' ')
+                i++;
+            if (i > begin)
+                tokens[index++] = line.substring(begin, i);
+        }
+        return tokens;
+    }
+
+    /**
+     * VALUE &lt;key&gt; &lt;flags&gt; &lt;bytes&gt; [&lt;cas unique&gt;]
+     */
+    private void writeValue(String key, boolean withCas)
+    {
+        MemcachedItem item = key.length() > MAX_KEY_LENGTH ? null : cache.get(key);
+        if (item == null)
+            return;
+
+        writeBytes(VALUE);
+        writeAscii(key + " " + item.getFlags() + " " + item.getData().length
+                + (withCas ? " " + item.getCas() : ""));
+        writeBytes(CRLF);
+        writeBytes(item.getData());
+        writeBytes(CRLF);
+    }
+
+    /**
+     * set &lt;key&gt; &lt;flags&gt; &lt;exptime&gt; &lt;bytes&gt; [noreply]
+     */
+    private boolean processSet(String[] tokens, int next)
+    {
+        int flags;
+        int length;
+        try
+        {
+            if (tokens.length < 5 || tokens[1].length() > MAX_KEY_LENGTH)
+                throw new NumberFormatException();
+            flags = (int) Long.parseLong(tokens[2]);
+            length = Integer.parseInt(tokens[4]);
+            if (length < 0 || length > MAX_VALUE_LENGTH)
+                throw new NumberFormatException();
+        }
+        catch (NumberFormatException e)
+        {
+            ((Buffer) readBuffer).position(next);
+            writeBytes(ascii("CLIENT_ERROR bad command line format\r\n"));
+            return true;
+        }
+
+        if (readBuffer.limit() - next < length + CRLF.length)
+            return false;
+
+        byte[] data = new byte[length];
+        ((Buffer) readBuffer).position(next);
+        readBuffer.get(data);
+        if (readBuffer.get() != '\r' || readBuffer.get() != '\n')
+        {
+            writeBytes(ascii("CLIENT_ERROR bad data chunk\r\n"));
+            closeAfterFlush = true;
+            return true;
+        }
+
+        cache.put(tokens[1], new MemcachedItem(flags, data));
+        if (!isNoReply(tokens, 5))
+            writeBytes(STORED);
+        return true;
+    }
+
+    private void processDelete(String[] tokens)
+    {
+        if (tokens.length < 2)
+        {
+            writeBytes(ERROR);
+            return;
+        }
+
+        boolean removed = cache.remove(tokens[1]);
+        if (!isNoReply(tokens, 2))
+            writeBytes(removed ? DELETED : NOT_FOUND);
+    }
+
+    private static boolean isNoReply(String[] tokens, int index)
+    {
+        return tokens.length > index && "noreply".equals(tokens[index]);
+    }
+
+    // ---------------------------------------------------------------- binary protocol
+
+    private boolean processBinary()
+    {
+        int start = readBuffer.position();
+        if (readBuffer.remaining() < BINARY_HEADER_LENGTH)
+            return false;
+
+        int bodyLength = readBuffer.getInt(start + 8);
+        if (bodyLength < 0 || bodyLength > MAX_VALUE_LENGTH + MAX_KEY_LENGTH + 32)
+        {
+            closeAfterFlush = true;
+            return false;
+        }
+        if (readBuffer.remaining() < BINARY_HEADER_LENGTH + bodyLength)
+            return false;
+
+        byte opcode = readBuffer.get(start + 1);
+        int keyLength = readBuffer.getShort(start + 2) & 0xffff;
+        int extLength = readBuffer.get(start + 4) & 0xff;
+        int opaque = readBuffer.getInt(start + 12);
+        int keyStart = start + BINARY_HEADER_LENGTH + extLength;
+        int valueLength = bodyLength - extLength - keyLength;
+
+        if (valueLength < 0)
+        {
+            ((Buffer) readBuffer).position(start + BINARY_HEADER_LENGTH + bodyLength);
+            writeBinaryStatus(opcode, STATUS_INVALID_ARGUMENTS, opaque);
+            return true;
+        }
+
+        String key = readAscii(keyStart, keyLength);
+        switch (opcode)
+        {
+            case OP_GET:
+            case OP_GETQ:
+            case OP_GETK:
+            case OP_GETKQ:
+            {
+                MemcachedItem item = cache.get(key);
+                boolean quiet = opcode == OP_GETQ || opcode == OP_GETKQ;
+                boolean withKey = opcode == OP_GETK || opcode == OP_GETKQ;
+                if (item != null)
+                    writeBinaryValue(opcode, opaque, withKey ? key : null, item);
+                else if (!quiet)
+                    writeBinaryStatus(opcode, STATUS_NOT_FOUND, opaque);
+                break;
+            }
+            case OP_SET:
+            case OP_SETQ:
+            {
+                int flags = extLength >= 4 ? readBuffer.getInt(start + BINARY_HEADER_LENGTH) : 0;
+                byte[] data = new byte[valueLength];
+                ((Buffer) readBuffer).position(keyStart + keyLength);
+                readBuffer.get(data);
+                cache.put(key, new MemcachedItem(flags, data));
+                if (opcode == OP_SET)
+                    writeBinaryStatus(opcode, STATUS_OK, opaque);
+                break;
+            }
+            case OP_DELETE:
+            case OP_DELETEQ:
+                if (!cache.remove(key))
+                    writeBinaryStatus(opcode, STATUS_NOT_FOUND, opaque);
+                else if (opcode == OP_DELETE)
+                    writeBinaryStatus(opcode, STATUS_OK, opaque);
+                break;
+            case OP_NOOP:
+                writeBinaryStatus(opcode, STATUS_OK, opaque);
+                break;
+            case OP_VERSION:
+            {
+                byte[] version = ascii(MemcachedServer.VERSION);
+                writeBinaryHeader(opcode, 0, 0, STATUS_OK, version.length, opaque, 0L);
+                writeBytes(version);
+                break;
+            }
+            case OP_QUIT:
+            case OP_QUITQ:
+                if (opcode == OP_QUIT)
+                    writeBinaryStatus(opcode, STATUS_OK, opaque);
+                closeAfterFlush = true;
+                break;
+            default:
+                writeBinaryStatus(opcode, STATUS_UNKNOWN_COMMAND, opaque);
+        }
+
+        ((Buffer) readBuffer).position(start + BINARY_HEADER_LENGTH + bodyLength);
+        return true;
+    }
+
+    private void writeBinaryValue(byte opcode, int opaque, String key, MemcachedItem item)
+    {
+        byte[] keyBytes = key == null ? new byte[0] : ascii(key);
+        byte[] data = item.getData();
+        writeBinaryHeader(opcode, keyBytes.length, 4, STATUS_OK, 4 + keyBytes.length + data.length, opaque,
+                item.getCas());
+        ensure(4).putInt(item.getFlags());
+        writeBytes(keyBytes);
+        writeBytes(data);
+    }
+
+    private void writeBinaryStatus(byte opcode, short status, int opaque)
+    {
+        writeBinaryHeader(opcode, 0, 0, status, 0, opaque, 0L);
+    }
+
+    private void writeBinaryHeader(byte opcode, int keyLength, int extLength, short status,
+                                   int bodyLength, int opaque, long cas)
+    {
+        ensure(BINARY_HEADER_LENGTH)
+                .put((byte) RESPONSE_MAGIC)
+                .put(opcode)
+                .putShort((short) keyLength)
+                .put((byte) extLength)
+                .put((byte) 0)
+                .putShort(status)
+                .putInt(bodyLength)
+                .putInt(opaque)
+                .putLong(cas);
+    }
+
+    // ---------------------------------------------------------------- encoding
+
+    /**
+     * @return the current output buffer, with at least n bytes remaining
+     */
+    private ByteBuffer ensure(int n)
+    {
+        if (current != null && current.remaining() < n)
+            queueCurrent();
+        if (current == null)
+            current = pool.acquire();
+        return current;
+    }
+
+    private void queueCurrent()
+    {
+        ((Buffer) current).flip();
+        output.add(current);
+        outputBytes += current.remaining();
+        current = null;
+    }
+
+    private void writeBytes(byte[] bytes)
+    {
+        int offset = 0;
+        while (offset < bytes.length)
+        {
+            ByteBuffer buffer = ensure(1);
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    private void writeAscii(String s)
+    {
+        writeBytes(ascii(s));
+    }
+
+    private String readAscii(int index, int length)
+    {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++)
+            bytes[i] = readBuffer.get(index + i);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] ascii(String s)
+    {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
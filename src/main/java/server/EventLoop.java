@@ -0,0 +1,150 @@
+package server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.cache.Cache;
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A selector thread serving a subset of the connections
+ */
+class EventLoop implements Runnable
+{
+    private static final Logger LOG = LoggerFactory.getLogger(EventLoop.class);
+
+    private final Selector selector;
+
+    private final Cache<String, MemcachedItem> cache;
+
+    private final BufferPool pool;
+
+    private final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+
+    private final Thread thread;
+
+    private volatile boolean running = true;
+
+    EventLoop(String name, Cache<String, MemcachedItem> cache, BufferPool pool) throws IOException
+    {
+        this.selector = Selector.open();
+        this.cache = cache;
+        this.pool = pool;
+        this.thread = new Thread(this, name);
+        this.thread.setDaemon(true);
+    }
+
+    void start()
+    {
+        thread.start();
+    }
+
+    /**
+     * Hand a freshly accepted channel over to this loop, may be called from any thread
+     */
+    void register(SocketChannel channel)
+    {
+        pending.add(channel);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run()
+    {
+        while (running)
+        {
+            try
+            {
+                selector.select();
+                registerPending();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext())
+                {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handle(key);
+                }
+            }
+            catch (IOException e)
+            {
+                LOG.warn("event loop " + thread.getName() + " failed to select", e);
+            }
+        }
+
+        for (SelectionKey key : selector.keys())
+            ((Connection) key.attachment()).close();
+        try
+        {
+            selector.close();
+        }
+        catch (IOException e)
+        {
+            LOG.warn("cannot close selector", e);
+        }
+    }
+
+    void close()
+    {
+        running = false;
+        selector.wakeup();
+        try
+        {
+            thread.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void handle(SelectionKey key)
+    {
+        Connection connection = (Connection) key.attachment();
+        try
+        {
+            if (key.isValid() && key.isReadable())
+                connection.onReadable();
+            if (key.isValid() && key.isWritable())
+                connection.onWritable();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            LOG.debug("closing connection", e);
+            connection.close();
+        }
+    }
+
+    private void registerPending()
+    {
+        SocketChannel channel;
+        while ((channel = pending.poll()) != null)
+        {
+            try
+            {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                Connection connection = new Connection(channel, cache, pool);
+                connection.setSelectionKey(channel.register(selector, SelectionKey.OP_READ, connection));
+            }
+            catch (IOException e)
+            {
+                LOG.warn("cannot register connection", e);
+                try
+                {
+                    channel.close();
+                }
+                catch (IOException ignored)
+                {
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package server;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Value stored for a memcached key: opaque client flags plus the raw data,
+ * and the unique CAS value of this version of the key
+ */
+public class MemcachedItem implements Serializable
+{
+    private static final long serialVersionUID = 2L;
+
+    private static final AtomicLong CAS_SEQUENCE = new AtomicLong();
+
+    private final int flags;
+
+    private final byte[] data;
+
+    private final long cas;
+
+    public MemcachedItem(int flags, byte[] data)
+    {
+        this.flags = flags;
+        this.data = data;
+        this.cas = CAS_SEQUENCE.incrementAndGet();
+    }
+
+    public int getFlags()
+    {
+        return flags;
+    }
+
+    public byte[] getData()
+    {
+        return data;
+    }
+
+    public long getCas()
+    {
+        return cas;
+    }
+}
@@ -0,0 +1,172 @@
+package server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.MutableConfiguration;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Properties;
+
+/**
+ * Serve a cache over TCP with the memcached get/set/delete/flush_all text and binary protocols.
+ * An acceptor thread hands connections round-robin to a group of selector event loops.
+ *
+ * Expiration times sent by clients are accepted but ignored, entries live as long as the
+ * cache keeps them.
+ */
+public class MemcachedServer implements Closeable
+{
+    private static final Logger LOG = LoggerFactory.getLogger(MemcachedServer.class);
+
+    static final String VERSION = "1.0-simplecache";
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final Cache<String, MemcachedItem> cache;
+
+    private final InetSocketAddress address;
+
+    private final EventLoop[] eventLoops;
+
+    private final BufferPool pool;
+
+    private ServerSocketChannel serverChannel;
+
+    private Thread acceptor;
+
+    public MemcachedServer(Cache<String, MemcachedItem> cache, InetSocketAddress address, int eventLoopCount)
+    {
+        if (eventLoopCount <= 0)
+            throw new IllegalArgumentException("eventLoopCount should be positive: " + eventLoopCount);
+
+        this.cache = cache;
+        this.address = address;
+        this.eventLoops = new EventLoop[eventLoopCount];
+        this.pool = new BufferPool(BUFFER_SIZE, eventLoopCount * 256);
+    }
+
+    /**
+     * Serve the cache of the manager with the given name, creating it when it does not exist yet
+     */
+    public static MemcachedServer create(CacheManager cacheManager, String cacheName,
+                                         InetSocketAddress address, int eventLoopCount)
+    {
+        Cache<String, MemcachedItem> cache = cacheManager.getCache(cacheName, String.class, MemcachedItem.class);
+        if (cache == null)
+            cache = cacheManager.createCache(cacheName,
+                    new MutableConfiguration<String, MemcachedItem>().setTypes(String.class, MemcachedItem.class));
+        return new MemcachedServer(cache, address, eventLoopCount);
+    }
+
+    public synchronized void start() throws IOException
+    {
+        if (serverChannel != null)
+            throw new IllegalStateException("server already started");
+
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address, 1024);
+
+        for (int i = 0; i < eventLoops.length; i++)
+        {
+            eventLoops[i] = new EventLoop("memcached-loop-" + i, cache, pool);
+            eventLoops[i].start();
+        }
+
+        acceptor = new Thread(this::accept, "memcached-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        LOG.info("memcached server listening on " + serverChannel.getLocalAddress());
+    }
+
+    /**
+     * @return the bound port, useful when started on port 0
+     */
+    public int getPort()
+    {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public Cache<String, MemcachedItem> getCache()
+    {
+        return cache;
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if (serverChannel == null)
+            return;
+
+        serverChannel.close();
+        try
+        {
+            acceptor.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        for (EventLoop eventLoop : eventLoops)
+            eventLoop.close();
+    }
+
+    private void accept()
+    {
+        int next = 0;
+        while (serverChannel.isOpen())
+        {
+            try
+            {
+                SocketChannel channel = serverChannel.accept();
+                eventLoops[next].register(channel);
+                next = (next + 1) % eventLoops.length;
+            }
+            catch (ClosedChannelException e)
+            {
+                return;
+            }
+            catch (IOException e)
+            {
+                LOG.warn("cannot accept connection", e);
+            }
+        }
+    }
+
+    /**
+     * Usage: MemcachedServer [port] [eventLoops] [dataStoreType] [capacity]
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 11211;
+        int loops = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        Properties properties = new Properties();
+        if (args.length > 2)
+            properties.setProperty("dataStoreType", args[2]);
+        if (args.length > 3)
+            properties.setProperty("capacity", args[3]);
+
+        CacheManager manager = Caching.getCachingProvider().getCacheManager(null, null, properties);
+        MemcachedServer server = create(manager, "memcached", new InetSocketAddress(port), loops);
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try
+            {
+                server.close();
+            }
+            catch (IOException e)
+            {
+                LOG.warn("cannot close server", e);
+            }
+            manager.close();
+        }));
+    }
+}
@@ -1,9 +1,11 @@
 package store;
 
 import store.value.BasicValueHolder;
+import store.value.Tags;
 import store.value.ValueHolder;
 
 import java.util.Map;
+import java.util.Spliterator;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class BasicDataStore<K, V> implements DataStore<K, V>
@@ -17,9 +19,9 @@ public class BasicDataStore<K, V> implements DataStore<K, V>
     }
 
     @Override
-    public void put(K key, V value)
+    public void put(K key, V value, Tags tags)
     {
-        cacheMap.put(key, new BasicValueHolder<>(value));
+        cacheMap.put(key, new BasicValueHolder<>(value, tags));
     }
 
     @Override
@@ -28,9 +30,27 @@ public class BasicDataStore<K, V> implements DataStore<K, V>
         return cacheMap.remove(key);
     }
 
+    @Override
+    public boolean remove(K key, ValueHolder<V> expected)
+    {
+        return cacheMap.remove(key, expected);
+    }
+
+    @Override
+    public boolean replace(K key, ValueHolder<V> expected, V value, Tags tags)
+    {
+        return cacheMap.replace(key, expected, new BasicValueHolder<>(value, tags));
+    }
+
     @Override
     public void clear()
     {
         cacheMap.clear();
     }
+
+    @Override
+    public Spliterator<Map.Entry<K, ValueHolder<V>>> spliterator()
+    {
+        return cacheMap.entrySet().spliterator();
+    }
 }
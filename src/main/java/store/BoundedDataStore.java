@@ -0,0 +1,30 @@
+package store;
+
+/**
+ * A store holding at most {@link #getCapacity()} entries,
+ * whose capacity can be changed while the cache is in use.
+ */
+public interface BoundedDataStore<K, V> extends DataStore<K, V>
+{
+    long getCapacity();
+
+    long getSize();
+
+    /**
+     * Change the capacity, evicting in bulk when the store shrinks below its size.
+     * @return number of evicted entries
+     */
+    long setCapacity(long capacity);
+
+    /**
+     * @return System.nanoTime() of the last access to the next entry to evict,
+     * Long.MAX_VALUE if the store is empty. Approximate, read without locking.
+     */
+    long oldestAccessTime();
+
+    /**
+     * Evict the next entry to evict
+     * @return false if the store is empty
+     */
+    boolean evict();
+}
@@ -1,14 +1,61 @@
 package store;
 
+import store.value.Tags;
 import store.value.ValueHolder;
 
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+
 public interface DataStore<K, V>
 {
     ValueHolder<V> get(K key);
 
-    void put(K key, V value);
+    /**
+     * get without touching any access order, for internal bookkeeping reads
+     */
+    default ValueHolder<V> peek(K key)
+    {
+        return get(key);
+    }
+
+    default void put(K key, V value)
+    {
+        put(key, value, null);
+    }
+
+    /**
+     * @param tags kept in the value holder, null for an untagged entry
+     */
+    void put(K key, V value, Tags tags);
 
     ValueHolder<V> remove(K key);
 
+    /**
+     * Remove the entry only if the key still maps to the expected holder, compared by identity
+     * @return true if removed
+     */
+    boolean remove(K key, ValueHolder<V> expected);
+
+    /**
+     * Store a new value only if the key still maps to the expected holder, compared by identity.
+     * The access order is left untouched.
+     * @return true if replaced
+     */
+    boolean replace(K key, ValueHolder<V> expected, V value, Tags tags);
+
     void clear();
+
+    /**
+     * Weakly consistent view of the stored entries: it never blocks writers,
+     * never copies the store and does not touch any access order.
+     * Splits are supported, so it can back a parallel stream.
+     */
+    Spliterator<Map.Entry<K, ValueHolder<V>>> spliterator();
+
+    default Iterator<Map.Entry<K, ValueHolder<V>>> iterator()
+    {
+        return Spliterators.iterator(spliterator());
+    }
 }
@@ -0,0 +1,20 @@
+package store;
+
+/**
+ * A number of entries shared by several bounded stores.
+ * Stores reserve an entry before an insert and release it when the entry leaves.
+ */
+public interface EntryBudget
+{
+    /**
+     * Called before an insert, never under a store lock: may evict from any store to make room
+     */
+    void reserve(BoundedDataStore<?, ?> store);
+
+    /**
+     * Account for an entry inserted without a reservation, never evicts
+     */
+    void charge();
+
+    void release(long count);
+}
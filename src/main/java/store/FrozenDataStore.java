@@ -0,0 +1,321 @@
+package store;
+
+import store.value.BasicValueHolder;
+import store.value.Tags;
+import store.value.ValueHolder;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Read-only snapshot for reference data: one immutable open-addressing table, keys and values
+ * interleaved in a single array, published through a volatile field. A get is a hash, an array
+ * probe and an equals, without locks nor access order; no per-entry node exists besides the holder.
+ *
+ * The snapshot is meant to be replaced as a whole by {@link #publish(Map)}. put and remove, from read-through
+ * loads or invalidations, do not copy the table: they go to a small map of corrections that a get checks first,
+ * and the corrections are merged into a new table in one rebuild once they reach an eighth of the table. A get
+ * on a snapshot without corrections stays a single probe.
+ */
+public class FrozenDataStore<K, V> implements DataStore<K, V>
+{
+    /**
+     * Corrections below this count are never merged, whatever the table size
+     */
+    private static final int MIN_MERGED_CORRECTIONS = 64;
+
+    /**
+     * Tombstone in the corrections: the key was removed from the table
+     */
+    private static final Object REMOVED = new Object();
+
+    private volatile Snapshot snapshot = new Snapshot(new Table(0), null);
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public ValueHolder<V> get(K key)
+    {
+        Snapshot current = snapshot;
+        if (current.corrections != null)
+        {
+            Object corrected = current.corrections.get(key);
+            if (corrected != null)
+                return corrected == REMOVED ? null : (ValueHolder<V>) corrected;
+        }
+        return (ValueHolder<V>) current.table.get(key);
+    }
+
+    /**
+     * Build a new snapshot from the entries and swap it in atomically:
+     * readers see either the previous snapshot or this one, never a mix
+     */
+    public void publish(Map<? extends K, ? extends V> entries)
+    {
+        Table built = new Table(entries.size());
+        entries.forEach((key, value) -> built.insert(key, new BasicValueHolder<>(value)));
+        synchronized (this)
+        {
+            snapshot = new Snapshot(built, null);
+        }
+    }
+
+    @Override
+    public synchronized void put(K key, V value, Tags tags)
+    {
+        if (key == null)
+            throw new NullPointerException("key can not be null");
+
+        correct(key, new BasicValueHolder<>(value, tags));
+    }
+
+    @Override
+    public synchronized ValueHolder<V> remove(K key)
+    {
+        ValueHolder<V> removed = get(key);
+        if (removed != null)
+            correct(key, REMOVED);
+        return removed;
+    }
+
+    @Override
+    public synchronized boolean remove(K key, ValueHolder<V> expected)
+    {
+        if (get(key) != expected)
+            return false;
+
+        remove(key);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean replace(K key, ValueHolder<V> expected, V value, Tags tags)
+    {
+        if (get(key) != expected)
+            return false;
+
+        put(key, value, tags);
+        return true;
+    }
+
+    @Override
+    public void clear()
+    {
+        publish(Collections.<K, V>emptyMap());
+    }
+
+    public int getSize()
+    {
+        return merged().size;
+    }
+
+    /**
+     * Iterates one snapshot: entries published or written later are not seen
+     */
+    @Override
+    public Spliterator<Map.Entry<K, ValueHolder<V>>> spliterator()
+    {
+        Table current = merged();
+        return new TableSpliterator<>(current, 0, current.slots.length / 2);
+    }
+
+    /**
+     * Called with the lock held. The corrections map is only written under the lock and replaced,
+     * never cleared, by a merge: a reader holding the previous snapshot still sees consistent data
+     */
+    private void correct(Object key, Object correction)
+    {
+        Snapshot current = snapshot;
+        if (current.corrections == null)
+        {
+            current = new Snapshot(current.table, new ConcurrentHashMap<>());
+            snapshot = current;
+        }
+        current.corrections.put(key, correction);
+        if (current.corrections.size() >= Math.max(MIN_MERGED_CORRECTIONS, current.table.size >>> 3))
+            merged();
+    }
+
+    /**
+     * The table with the pending corrections applied, rebuilt once and published in their place
+     */
+    private synchronized Table merged()
+    {
+        Snapshot current = snapshot;
+        if (current.corrections == null)
+            return current.table;
+
+        Map<Object, Object> corrections = current.corrections;
+        Table merged = new Table(current.table.size + corrections.size());
+        current.table.forEach((key, holder) -> {
+            if (!corrections.containsKey(key))
+                merged.insert(key, holder);
+        });
+        corrections.forEach((key, correction) -> {
+            if (correction != REMOVED)
+                merged.insert(key, (ValueHolder<?>) correction);
+        });
+        snapshot = new Snapshot(merged, null);
+        return merged;
+    }
+
+    private static final class Snapshot
+    {
+        private final Table table;
+
+        /**
+         * null while the table has no pending correction
+         */
+        private final Map<Object, Object> corrections;
+
+        Snapshot(Table table, Map<Object, Object> corrections)
+        {
+            this.table = table;
+            this.corrections = corrections;
+        }
+    }
+
+    private static final class Table
+    {
+        /**
+         * key at 2 * i, its holder at 2 * i + 1
+         */
+        private final Object[] slots;
+
+        private final int mask;
+
+        private int size;
+
+        Table(int expectedSize)
+        {
+            // half full at most, probes stay short
+            int capacity = 2;
+            while (capacity < expectedSize * 2)
+                capacity <<= 1;
+            this.slots = new Object[capacity * 2];
+            this.mask = capacity - 1;
+        }
+
+        ValueHolder<?> get(Object key)
+        {
+            Object[] slots = this.slots;
+            for (int i = index(key); ; i = (i + 1) & mask)
+            {
+                Object candidate = slots[i << 1];
+                if (candidate == null)
+                    return null;
+                if (candidate.equals(key))
+                    return (ValueHolder<?>) slots[(i << 1) + 1];
+            }
+        }
+
+        /**
+         * Only called while the table is being built, before it is published
+         */
+        void insert(Object key, ValueHolder<?> holder)
+        {
+            if (key == null)
+                throw new NullPointerException("key can not be null");
+
+            for (int i = index(key); ; i = (i + 1) & mask)
+            {
+                Object candidate = slots[i << 1];
+                if (candidate == null)
+                {
+                    slots[i << 1] = key;
+                    slots[(i << 1) + 1] = holder;
+                    size++;
+                    return;
+                }
+                if (candidate.equals(key))
+                {
+                    slots[(i << 1) + 1] = holder;
+                    return;
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        <K> void forEach(SlotConsumer<K> action)
+        {
+            for (int i = 0; i < slots.length; i += 2)
+            {
+                if (slots[i] != null)
+                    action.accept((K) slots[i], (ValueHolder<?>) slots[i + 1]);
+            }
+        }
+
+        private int index(Object key)
+        {
+            int h = key.hashCode();
+            return (h ^ (h >>> 16)) & mask;
+        }
+    }
+
+    private interface SlotConsumer<K>
+    {
+        void accept(K key, ValueHolder<?> holder);
+    }
+
+    private static final class TableSpliterator<K, V> implements Spliterator<Map.Entry<K, ValueHolder<V>>>
+    {
+        private final Table table;
+
+        private int index;
+
+        private final int fence;
+
+        TableSpliterator(Table table, int index, int fence)
+        {
+            this.table = table;
+            this.index = index;
+            this.fence = fence;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super Map.Entry<K, ValueHolder<V>>> action)
+        {
+            Object[] slots = table.slots;
+            while (index < fence)
+            {
+                int slot = index++ << 1;
+                if (slots[slot] != null)
+                {
+                    action.accept(new AbstractMap.SimpleImmutableEntry<>(
+                            (K) slots[slot], (ValueHolder<V>) slots[slot + 1]));
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Spliterator<Map.Entry<K, ValueHolder<V>>> trySplit()
+        {
+            int middle = (index + fence) >>> 1;
+            if (middle - index < 64)
+                return null;
+
+            TableSpliterator<K, V> prefix = new TableSpliterator<>(table, index, middle);
+            index = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize()
+        {
+            // the whole snapshot is counted for the top level spliterator, a fraction of it for splits
+            return (long) table.size * (fence - index) / Math.max(1, table.slots.length / 2);
+        }
+
+        @Override
+        public int characteristics()
+        {
+            return DISTINCT | NONNULL | IMMUTABLE;
+        }
+    }
+}
@@ -1,15 +1,19 @@
 package store;
 
-import store.DataStore;
+import event.Events;
+import event.EvictionEvent;
+import event.LockContentionEvent;
 import store.value.BasicValueHolder;
+import store.value.Tags;
 import store.value.ValueHolder;
 
 import java.util.Map;
+import java.util.Spliterator;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
-public class LRUDataStore<K, V> implements DataStore<K, V>
+public class LRUDataStore<K, V> implements BoundedDataStore<K, V>
 {
 
     private Map<K, LRUEntry<K, ValueHolder<?>>> cacheMap = new ConcurrentHashMap<>();
@@ -23,13 +27,24 @@ public class LRUDataStore<K, V> implements DataStore<K, V>
 
     private Lock lock = new ReentrantLock();
 
-    private final long capacity;
+    private volatile long capacity;
 
     private long size;
 
+    /**
+     * Shared with other stores, null if the store is only bounded by its capacity
+     */
+    private final EntryBudget budget;
+
     public LRUDataStore(long capacity)
+    {
+        this(capacity, null);
+    }
+
+    public LRUDataStore(long capacity, EntryBudget budget)
     {
         this.capacity = capacity;
+        this.budget = budget;
     }
 
     @Override
@@ -39,8 +54,10 @@ public class LRUDataStore<K, V> implements DataStore<K, V>
         LRUEntry<K, ValueHolder<?>> entry = cacheMap.get(key);
         if(entry != null)
         {
-            lock.lock();
-            moveToFirst(entry);
+            acquireLock();
+            // it may have been removed since the lookup, never relink it then
+            if (!entry.unlinked)
+                moveToFirst(entry);
             lock.unlock();
 
             return (ValueHolder<V>) entry.getValue();
@@ -50,34 +67,66 @@ public class LRUDataStore<K, V> implements DataStore<K, V>
     }
 
     @Override
-    public void put(K key, V value)
+    @SuppressWarnings("unchecked")
+    public ValueHolder<V> peek(K key)
     {
         LRUEntry<K, ValueHolder<?>> entry = cacheMap.get(key);
-        if(entry == null)
+        return entry == null ? null : (ValueHolder<V>) entry.getValue();
+    }
+
+    @Override
+    public void put(K key, V value, Tags tags)
+    {
+        // reserved before taking the lock, as making room may evict from other stores;
+        // a full store makes room itself
+        boolean reserved = budget != null && size < capacity && !cacheMap.containsKey(key);
+        if (reserved)
+            budget.reserve(this);
+
+        long released = reserved ? 1 : 0;
+        boolean charged = false;
+        acquireLock();
+        try
         {
-            // insert
-            lock.lock();
-            if(size >= capacity)
+            // looked up under the lock, so concurrent inserts of a key never leave a stray list entry
+            LRUEntry<K, ValueHolder<?>> entry = cacheMap.get(key);
+            if(entry == null)
             {
-                // replace
-                cacheMap.remove(last.key);
-                removeLast();
-                size--;
+                // insert
+                if(size >= capacity)
+                {
+                    // replace
+                    cacheMap.remove(last.key);
+                    removeLast();
+                    size--;
+                    if (Events.AVAILABLE)
+                        evicted(1, "capacity");
+                }
+                else if (reserved)
+                    released = 0;
+                else
+                    charged = budget != null;
+                entry = new LRUEntry<K, ValueHolder<?>>(key, new BasicValueHolder<>(value, tags));
+                cacheMap.put(key, entry);
+                moveToFirst(entry);
+                size++;
+            }
+            else
+            {
+                // update
+                entry.valueHolder = new BasicValueHolder<>(value, tags);
+                moveToFirst(entry);
             }
-            entry = new LRUEntry<K, ValueHolder<?>>(key, new BasicValueHolder<>(value));
-            cacheMap.put(key, entry);
-            moveToFirst(entry);
-            size++;
-            lock.unlock();
         }
-        else
+        finally
         {
-            // update
-            entry.valueHolder = new BasicValueHolder<>(value);
-            lock.lock();
-            moveToFirst(entry);
             lock.unlock();
         }
+
+        if (charged)
+            budget.charge();
+        if (released > 0)
+            budget.release(released);
     }
 
     @Override
@@ -85,49 +134,217 @@ public class LRUDataStore<K, V> implements DataStore<K, V>
     public ValueHolder<V> remove(K key)
     {
         ValueHolder<V> valueHolder = null;
-        lock.lock();
+        acquireLock();
 
-        LRUEntry<K, ValueHolder<?>> entry = cacheMap.get(key);
+        LRUEntry<K, ValueHolder<?>> entry = cacheMap.remove(key);
         if(entry != null)
         {
             valueHolder = (ValueHolder<V>) entry.getValue();
-            if (entry.preEntry != null)
-                entry.preEntry.nextEntry = entry.nextEntry;
-            if (entry.nextEntry != null)
-                entry.nextEntry.preEntry = entry.preEntry;
-            if (entry == first)
-                first = entry.nextEntry;
-            if (entry == last)
-                last = entry.preEntry;
-
-            size--;
+            unlink(entry);
         }
         lock.unlock();
-        cacheMap.remove(key);
 
+        if (budget != null && valueHolder != null)
+            budget.release(1);
         return valueHolder;
     }
 
+    @Override
+    public boolean remove(K key, ValueHolder<V> expected)
+    {
+        boolean removed = false;
+        acquireLock();
+        try
+        {
+            LRUEntry<K, ValueHolder<?>> entry = cacheMap.get(key);
+            if (entry != null && entry.valueHolder == expected)
+            {
+                cacheMap.remove(key);
+                unlink(entry);
+                removed = true;
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        if (budget != null && removed)
+            budget.release(1);
+        return removed;
+    }
+
+    @Override
+    public boolean replace(K key, ValueHolder<V> expected, V value, Tags tags)
+    {
+        acquireLock();
+        try
+        {
+            LRUEntry<K, ValueHolder<?>> entry = cacheMap.get(key);
+            if (entry == null || entry.valueHolder != expected)
+                return false;
+
+            // the entry keeps its place in the list
+            entry.valueHolder = new BasicValueHolder<>(value, tags);
+            return true;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
     @Override
     public void clear()
     {
-        cacheMap.clear();
-        this.first = null;
-        this.last = null;
+        long cleared;
+        acquireLock();
+        try
+        {
+            cleared = size;
+            cacheMap.clear();
+            // concurrent gets holding a dropped entry must not relink it
+            for (LRUEntry<K, ValueHolder<?>> entry = first; entry != null; entry = entry.nextEntry)
+                entry.unlinked = true;
+            this.first = null;
+            this.last = null;
+            this.size = 0;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        if (budget != null && cleared > 0)
+            budget.release(cleared);
     }
 
+    /**
+     * Walks the backing map rather than the LRU list, so no lock is taken
+     * and the access order is left untouched.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Spliterator<Map.Entry<K, ValueHolder<V>>> spliterator()
+    {
+        Spliterator<?> spliterator = cacheMap.values().spliterator();
+        return (Spliterator<Map.Entry<K, ValueHolder<V>>>) spliterator;
+    }
+
+    @Override
     public long getCapacity()
     {
         return capacity;
     }
 
+    @Override
     public long getSize()
     {
         return size;
     }
 
+    @Override
+    public long setCapacity(long capacity)
+    {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity should be positive: " + capacity);
+
+        long evicted = 0;
+        acquireLock();
+        try
+        {
+            this.capacity = capacity;
+            while (size > capacity && last != null)
+            {
+                cacheMap.remove(last.key);
+                removeLast();
+                size--;
+                evicted++;
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+        if (evicted > 0 && Events.AVAILABLE)
+            evicted(evicted, "resize");
+        if (budget != null && evicted > 0)
+            budget.release(evicted);
+        return evicted;
+    }
+
+    @Override
+    public long oldestAccessTime()
+    {
+        LRUEntry<K, ValueHolder<?>> entry = last;
+        return entry == null ? Long.MAX_VALUE : entry.lastAccess;
+    }
+
+    @Override
+    public boolean evict()
+    {
+        acquireLock();
+        try
+        {
+            if (last == null)
+                return false;
+
+            cacheMap.remove(last.key);
+            removeLast();
+            size--;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        if (Events.AVAILABLE)
+            evicted(1, "budget");
+        if (budget != null)
+            budget.release(1);
+        return true;
+    }
+
+    /**
+     * Uncontended acquisitions only cost the tryLock, the wait is recorded when it happens
+     */
+    private void acquireLock()
+    {
+        if (lock.tryLock())
+            return;
+        if (!Events.AVAILABLE)
+        {
+            lock.lock();
+            return;
+        }
+
+        LockContentionEvent event = new LockContentionEvent();
+        event.begin();
+        lock.lock();
+        event.end();
+        if (event.shouldCommit())
+        {
+            event.store = getClass().getSimpleName();
+            event.commit();
+        }
+    }
+
+    private void evicted(long count, String reason)
+    {
+        EvictionEvent event = new EvictionEvent();
+        if (event.shouldCommit())
+        {
+            event.store = getClass().getSimpleName();
+            event.evicted = count;
+            event.capacity = capacity;
+            event.reason = reason;
+            event.commit();
+        }
+    }
+
     private void moveToFirst(LRUEntry<K, ValueHolder<?>> entry)
     {
+        entry.lastAccess = System.nanoTime();
         if(entry == first)
             return;
 
@@ -151,10 +368,29 @@ public class LRUDataStore<K, V> implements DataStore<K, V>
         entry.preEntry = null;
     }
 
+    /**
+     * Take a removed entry out of the list, under the lock
+     */
+    private void unlink(LRUEntry<K, ValueHolder<?>> entry)
+    {
+        if (entry.preEntry != null)
+            entry.preEntry.nextEntry = entry.nextEntry;
+        if (entry.nextEntry != null)
+            entry.nextEntry.preEntry = entry.preEntry;
+        if (entry == first)
+            first = entry.nextEntry;
+        if (entry == last)
+            last = entry.preEntry;
+        entry.unlinked = true;
+
+        size--;
+    }
+
     private void removeLast()
     {
         if (last != null)
         {
+            last.unlinked = true;
             last = last.preEntry;
             if (last == null)
                 first = null;
@@ -167,12 +403,22 @@ public class LRUDataStore<K, V> implements DataStore<K, V>
     {
         private final K key;
 
-        private ValueHolder<?> valueHolder;
+        private volatile ValueHolder<?> valueHolder;
 
         private LRUEntry<K, ValueHolder<?>> preEntry;
 
         private LRUEntry<K, ValueHolder<?>> nextEntry;
 
+        /**
+         * Set under the lock once the entry left the list
+         */
+        private boolean unlinked;
+
+        /**
+         * Set under the lock, read without it by oldestAccessTime
+         */
+        private long lastAccess;
+
         public LRUEntry(K key, V value)
         {
             this.key = key;
@@ -4,9 +4,20 @@ public class BasicValueHolder<V> implements ValueHolder<V>
 {
     private final V value;
 
+    private final long creationTime;
+
+    private final Tags tags;
+
     public BasicValueHolder(V value)
+    {
+        this(value, null);
+    }
+
+    public BasicValueHolder(V value, Tags tags)
     {
         this.value = value;
+        this.creationTime = System.nanoTime();
+        this.tags = tags;
     }
 
     @Override
@@ -14,4 +25,16 @@ public class BasicValueHolder<V> implements ValueHolder<V>
     {
         return this.value;
     }
+
+    @Override
+    public long creationTime()
+    {
+        return creationTime;
+    }
+
+    @Override
+    public Tags tags()
+    {
+        return tags;
+    }
 }
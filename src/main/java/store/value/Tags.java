@@ -0,0 +1,36 @@
+package store.value;
+
+/**
+ * Tags of an entry, with the generation of each tag when the entry was stored.
+ * The entry is stale once any of its tags moved to a later generation.
+ */
+public final class Tags
+{
+    private final Object[] tags;
+
+    private final long[] generations;
+
+    public Tags(Object[] tags, long[] generations)
+    {
+        if (tags.length != generations.length)
+            throw new IllegalArgumentException("one generation per tag is expected");
+
+        this.tags = tags;
+        this.generations = generations;
+    }
+
+    public int size()
+    {
+        return tags.length;
+    }
+
+    public Object tag(int index)
+    {
+        return tags[index];
+    }
+
+    public long generation(int index)
+    {
+        return generations[index];
+    }
+}
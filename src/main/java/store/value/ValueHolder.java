@@ -3,4 +3,17 @@ package store.value;
 public interface ValueHolder<V>
 {
     V value();
+
+    /**
+     * @return System.nanoTime() when the value was stored
+     */
+    long creationTime();
+
+    /**
+     * @return the tags the value was stored with, null if it has none
+     */
+    default Tags tags()
+    {
+        return null;
+    }
 }
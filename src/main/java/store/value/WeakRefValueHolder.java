@@ -6,8 +6,18 @@ public class WeakRefValueHolder<V> implements ValueHolder<V>
 {
     private WeakReference<V> weakReference;
 
+    private final long creationTime = System.nanoTime();
+
+    private Tags tags;
+
     public WeakRefValueHolder(V value)
     {
+        this(value, null);
+    }
+
+    public WeakRefValueHolder(V value, Tags tags)
+    {
+        this.tags = tags;
         if(value == null)
             return;
 
@@ -21,4 +31,16 @@ public class WeakRefValueHolder<V> implements ValueHolder<V>
             return null;
         return weakReference.get(); // may return null if gc happened.
     }
+
+    @Override
+    public long creationTime()
+    {
+        return creationTime;
+    }
+
+    @Override
+    public Tags tags()
+    {
+        return tags;
+    }
 }
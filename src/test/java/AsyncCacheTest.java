@@ -0,0 +1,224 @@
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.FactoryBuilder;
+import javax.cache.configuration.MutableConfiguration;
+import javax.cache.integration.CacheLoader;
+import javax.cache.integration.CacheWriter;
+
+import cache.AsyncCache;
+import cache.SimpleCache;
+import cache.SimpleConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncCacheTest
+{
+    static final AtomicInteger LOADS = new AtomicInteger();
+
+    static final CountDownLatch RELEASE = new CountDownLatch(1);
+
+    static final AtomicInteger KNOWN_LOADS = new AtomicInteger();
+
+    static final Map<String, String> WRITTEN = new ConcurrentHashMap<>();
+
+    public static class SlowLoader implements CacheLoader<String, String>, Serializable
+    {
+        @Override
+        public String load(String key)
+        {
+            LOADS.incrementAndGet();
+            try
+            {
+                RELEASE.await(5, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            return key.startsWith("missing") ? null : "loaded-" + key;
+        }
+
+        @Override
+        public Map<String, String> loadAll(Iterable<? extends String> keys)
+        {
+            Map<String, String> values = new HashMap<>();
+            keys.forEach((key) -> values.put(key, load(key)));
+            return values;
+        }
+    }
+
+    /**
+     * Backend knowing the keys starting with "known"
+     */
+    public static class KnownKeysLoader implements CacheLoader<String, String>, Serializable
+    {
+        @Override
+        public String load(String key)
+        {
+            KNOWN_LOADS.incrementAndGet();
+            return key.startsWith("known") ? "loaded-" + key : null;
+        }
+
+        @Override
+        public Map<String, String> loadAll(Iterable<? extends String> keys)
+        {
+            Map<String, String> values = new HashMap<>();
+            keys.forEach((key) -> values.put(key, load(key)));
+            return values;
+        }
+    }
+
+    public static class MapWriter implements CacheWriter<String, String>, Serializable
+    {
+        @Override
+        public void write(Cache.Entry<? extends String, ? extends String> entry)
+        {
+            WRITTEN.put(entry.getKey(), entry.getValue());
+        }
+
+        @Override
+        public void writeAll(Collection<Cache.Entry<? extends String, ? extends String>> entries)
+        {
+            entries.forEach(this::write);
+        }
+
+        @Override
+        public void delete(Object key)
+        {
+            WRITTEN.remove(key);
+        }
+
+        @Override
+        public void deleteAll(Collection<?> keys)
+        {
+            keys.forEach(this::delete);
+        }
+    }
+
+    private CacheManager manager;
+
+    private ExecutorService executor;
+
+    private AsyncCache<String, String> async;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp()
+    {
+        manager = Caching.getCachingProvider().getCacheManager(URI.create("urn:test:async"), null, new Properties());
+        MutableConfiguration<String, String> configuration = new MutableConfiguration<String, String>()
+                .setReadThrough(true)
+                .setCacheLoaderFactory(FactoryBuilder.factoryOf(SlowLoader.class))
+                .setWriteThrough(true)
+                .setCacheWriterFactory(FactoryBuilder.factoryOf(MapWriter.class));
+        SimpleCache<String, String> cache = manager.createCache("Test", configuration).unwrap(SimpleCache.class);
+        executor = Executors.newFixedThreadPool(4);
+        async = new AsyncCache<>(cache, executor);
+    }
+
+    @After
+    public void tearDown()
+    {
+        executor.shutdownNow();
+        manager.close();
+    }
+
+    @Test
+    public void testConcurrentMissesShareOneLoad()
+    {
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            futures.add(async.getAsync("key"));
+        assertFalse(futures.get(0).isDone());
+
+        RELEASE.countDown();
+        for (CompletableFuture<String> future : futures)
+            assertEquals("loaded-key", future.join());
+        assertEquals(1, LOADS.get());
+
+        // a hit completes at once
+        assertTrue(async.getAsync("key").isDone());
+        assertNull(async.getAsync("missing").join());
+
+        Map<String, String> values = async.getAllAsync(new HashSet<>(Arrays.asList("key", "other", "missing2")))
+                .join();
+        assertEquals(2, values.size());
+        assertEquals("loaded-other", values.get("other"));
+    }
+
+    @Test
+    public void testPutWritesThrough()
+    {
+        async.putAsync("written", "value").join();
+        assertEquals("value", WRITTEN.get("written"));
+        assertEquals("value", async.getCache().getIfPresent("written"));
+
+        async.getCache().remove("written");
+        assertFalse(WRITTEN.containsKey("written"));
+    }
+
+    @Test
+    public void testRemoveAllDeletesThroughTheWriter()
+    {
+        WRITTEN.clear();
+        SimpleCache<String, String> cache = async.getCache();
+        cache.put("first", "value");
+        cache.put("second", "value");
+        WRITTEN.put("unknown", "value");
+
+        cache.removeAll();
+        assertFalse(cache.iterator().hasNext());
+        assertEquals(Collections.singleton("unknown"), WRITTEN.keySet());
+
+        // clear does not touch the writer
+        cache.put("third", "value");
+        cache.clear();
+        assertTrue(WRITTEN.containsKey("third"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBloomFilterSkipsLoads()
+    {
+        SimpleConfiguration<String, String> configuration = new SimpleConfiguration<String, String>()
+                .setBloomFilterFalsePositiveRate(0.001);
+        configuration.setReadThrough(true);
+        configuration.setCacheLoaderFactory(FactoryBuilder.factoryOf(KnownKeysLoader.class));
+        SimpleCache<String, String> cache = manager.createCache("Filtered", configuration).unwrap(SimpleCache.class);
+        cache.rebuildBloomFilter(new HashSet<>(Arrays.asList("known1", "known2")));
+        cache.clear();
+        KNOWN_LOADS.set(0);
+
+        AsyncCache<String, String> filtered = new AsyncCache<>(cache, executor);
+        assertNull(filtered.getAsync("unknown").join());
+        assertEquals(0, KNOWN_LOADS.get());
+        assertEquals("loaded-known1", filtered.getAsync("known1").join());
+        assertEquals(1, KNOWN_LOADS.get());
+    }
+}
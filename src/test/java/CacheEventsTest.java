@@ -0,0 +1,98 @@
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.FactoryBuilder;
+
+import cache.SimpleCache;
+import cache.SimpleConfiguration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import store.LRUDataStore;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CacheEventsTest
+{
+    private CacheManager manager;
+
+    private SimpleCache<Integer, String> cache;
+
+    @Before
+    public void setUp()
+    {
+        Properties properties = new Properties();
+        properties.setProperty("dataStoreType", "lru");
+        properties.setProperty("capacity", "10");
+        manager = Caching.getCachingProvider().getCacheManager(URI.create("urn:test:events"), null, properties);
+        SimpleConfiguration<Integer, String> configuration = new SimpleConfiguration<>();
+        configuration.setReadThrough(true);
+        configuration.setCacheLoaderFactory(FactoryBuilder.factoryOf(NegativeCacheTest.RangeLoader.class));
+        cache = manager.createCache("Test", configuration).unwrap(SimpleCache.class);
+    }
+
+    @After
+    public void tearDown()
+    {
+        manager.close();
+    }
+
+    @Test
+    public void testEvents() throws IOException
+    {
+        Path file = Files.createTempFile("cache-events", ".jfr");
+        try (Recording recording = new Recording())
+        {
+            recording.enable("simplecache.Eviction");
+            recording.enable("simplecache.Loader").withThreshold(Duration.ZERO);
+            recording.enable("simplecache.Get").withThreshold(Duration.ZERO);
+            recording.start();
+
+            for (int i = 0; i < 20; i++)
+                cache.get(i);
+            cache.unwrap(LRUDataStore.class).setCapacity(4);
+
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            List<RecordedEvent> evictions = byType(events, "simplecache.Eviction");
+            assertEquals(11, evictions.size());
+            RecordedEvent resize = evictions.get(evictions.size() - 1);
+            assertEquals("resize", resize.getString("reason"));
+            assertEquals(6, resize.getLong("evicted"));
+
+            List<RecordedEvent> loads = byType(events, "simplecache.Loader");
+            assertEquals(20, loads.size());
+            assertEquals(1, loads.get(0).getInt("found"));
+            assertFalse(loads.get(0).getBoolean("refresh"));
+            assertEquals(20, byType(events, "simplecache.Get").size());
+            // disabled events are not recorded
+            assertTrue(byType(events, "simplecache.Put").isEmpty());
+        }
+        finally
+        {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static List<RecordedEvent> byType(List<RecordedEvent> events, String name)
+    {
+        return events.stream()
+                .filter((event) -> event.getEventType().getName().equals(name))
+                .collect(Collectors.toList());
+    }
+}
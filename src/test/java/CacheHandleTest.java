@@ -0,0 +1,95 @@
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.MutableConfiguration;
+import javax.cache.spi.CachingProvider;
+
+import cache.CacheHandle;
+import cache.SimpleCacheManager;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class CacheHandleTest
+{
+    @Test
+    public void testHandleFollowsTheCache()
+    {
+        CacheManager manager = Caching.getCachingProvider()
+                .getCacheManager(URI.create("urn:test:handle"), null, new Properties());
+        try
+        {
+            CacheHandle<String, Integer> handle = manager.unwrap(SimpleCacheManager.class)
+                    .getCacheHandle("Test", String.class, Integer.class);
+            assertSame(handle, manager.unwrap(SimpleCacheManager.class)
+                    .getCacheHandle("Test", String.class, Integer.class));
+            assertNull(handle.get());
+
+            MutableConfiguration<String, Integer> configuration = new MutableConfiguration<String, Integer>()
+                    .setTypes(String.class, Integer.class);
+            Cache<String, Integer> cache = manager.createCache("Test", configuration);
+            assertSame(cache, handle.get());
+            assertSame(cache, handle.get());
+
+            manager.destroyCache("Test");
+            assertNull(handle.get());
+
+            Cache<String, Integer> recreated = manager.createCache("Test", configuration);
+            assertNotSame(cache, recreated);
+            assertSame(recreated, handle.get());
+
+            CacheHandle<Integer, Integer> wrongTypes = manager.unwrap(SimpleCacheManager.class)
+                    .getCacheHandle("Test", Integer.class, Integer.class);
+            try
+            {
+                wrongTypes.get();
+                throw new AssertionError("the key type was not checked");
+            }
+            catch (ClassCastException expected)
+            {
+            }
+        }
+        finally
+        {
+            manager.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentLookupsShareOneManager() throws Exception
+    {
+        CachingProvider provider = Caching.getCachingProvider();
+        URI uri = URI.create("urn:test:handle:concurrent");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try
+        {
+            List<Callable<CacheManager>> lookups = new ArrayList<>();
+            for (int i = 0; i < 64; i++)
+                lookups.add(() -> provider.getCacheManager(uri, null));
+
+            List<Future<CacheManager>> managers = executor.invokeAll(lookups);
+            CacheManager manager = managers.get(0).get();
+            for (Future<CacheManager> future : managers)
+                assertSame(manager, future.get());
+
+            manager.close();
+            assertNotSame(manager, provider.getCacheManager(uri, null));
+            provider.getCacheManager(uri, null).close();
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.MutableConfiguration;
+import javax.cache.spi.CachingProvider;
+
+import cache.SimpleCache;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class CacheIteratorTest
+{
+    private CacheManager newManager(String name, Properties properties)
+    {
+        CachingProvider cachingProvider = Caching.getCachingProvider();
+        return cachingProvider.getCacheManager(URI.create("urn:test:" + name), null, properties);
+    }
+
+    @Test
+    public void testIterateBasic()
+    {
+        CacheManager manager = newManager("iterate-basic", new Properties());
+        Cache<String, Integer> cache = manager.createCache("Test", new MutableConfiguration<>());
+        for (int i = 0; i < 100; i++)
+            cache.put("key" + i, i);
+
+        Set<String> keys = new HashSet<>();
+        for (Cache.Entry<String, Integer> entry : cache)
+            keys.add(entry.getKey());
+        assertEquals(100, keys.size());
+
+        long sum = ((SimpleCache<String, Integer>) cache).parallelStream()
+                .mapToLong(Cache.Entry::getValue).sum();
+        assertEquals(4950, sum);
+        manager.close();
+    }
+
+    @Test
+    public void testIterateLRUKeepsOrder()
+    {
+        Properties properties = new Properties();
+        properties.setProperty("dataStoreType", "lru");
+        properties.setProperty("capacity", "2");
+        CacheManager manager = newManager("iterate-lru", properties);
+        Cache<String, String> cache = manager.createCache("Test", new MutableConfiguration<>());
+
+        cache.put("a", "a");
+        cache.put("b", "b");
+        // iterating must not refresh "a"
+        assertEquals(2, ((SimpleCache<String, String>) cache).stream().count());
+        cache.put("c", "c");
+
+        assertNull(cache.get("a"));
+        assertNotNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        manager.close();
+    }
+}
@@ -0,0 +1,122 @@
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.MutableConfiguration;
+
+import cache.SimpleCache;
+import org.junit.Test;
+import store.FrozenDataStore;
+import store.value.ValueHolder;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.stream.StreamSupport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class FrozenDataStoreTest
+{
+    @Test
+    public void testStore()
+    {
+        Map<Integer, String> entries = new HashMap<>();
+        for (int i = 0; i < 10000; i++)
+            entries.put(i, "value" + i);
+
+        FrozenDataStore<Integer, String> store = new FrozenDataStore<>();
+        store.publish(entries);
+        assertEquals(10000, store.getSize());
+        for (int i = 0; i < 10000; i++)
+            assertEquals("value" + i, store.get(i).value());
+        assertNull(store.get(10000));
+
+        store.put(10000, "added");
+        store.put(0, "updated");
+        assertEquals("value1", store.remove(1).value());
+        assertEquals(10000, store.getSize());
+        assertEquals("added", store.get(10000).value());
+        assertEquals("updated", store.get(0).value());
+        assertNull(store.get(1));
+
+        assertEquals(10000, StreamSupport.stream(store.spliterator(), true).count());
+
+        store.clear();
+        assertEquals(0, store.getSize());
+        assertNull(store.get(0));
+    }
+
+    @Test
+    public void testCorrectionsAcrossMerges()
+    {
+        Map<Integer, String> expected = new HashMap<>();
+        for (int i = 0; i < 1000; i++)
+            expected.put(i, "value" + i);
+
+        FrozenDataStore<Integer, String> store = new FrozenDataStore<>();
+        store.publish(expected);
+
+        // enough writes to merge the corrections several times, checking between merges too
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++)
+        {
+            int key = random.nextInt(2000);
+            if (random.nextInt(3) == 0)
+            {
+                String removed = expected.remove(key);
+                ValueHolder<String> holder = store.remove(key);
+                assertEquals(removed, holder == null ? null : holder.value());
+            }
+            else
+            {
+                expected.put(key, "write" + i);
+                store.put(key, "write" + i);
+            }
+            ValueHolder<String> holder = store.get(key);
+            assertEquals(expected.get(key), holder == null ? null : holder.value());
+        }
+
+        for (int key = 0; key < 2000; key++)
+        {
+            ValueHolder<String> holder = store.get(key);
+            assertEquals(expected.get(key), holder == null ? null : holder.value());
+        }
+        assertEquals(expected.size(), store.getSize());
+        assertEquals(expected.size(), StreamSupport.stream(store.spliterator(), false).count());
+    }
+
+    @Test
+    public void testFrozenCache()
+    {
+        Properties properties = new Properties();
+        properties.setProperty("dataStoreType", "frozen");
+        CacheManager manager = Caching.getCachingProvider()
+                .getCacheManager(URI.create("urn:test:frozen"), null, properties);
+        try
+        {
+            SimpleCache<String, String> cache = manager.createCache("Countries",
+                    new MutableConfiguration<String, String>()).unwrap(SimpleCache.class);
+
+            Map<String, String> countries = new HashMap<>();
+            countries.put("FR", "France");
+            countries.put("DE", "Germany");
+            cache.publish(countries);
+            assertEquals("France", cache.get("FR"));
+
+            Map<String, String> rebuilt = new HashMap<>(countries);
+            rebuilt.put("FR", "French Republic");
+            rebuilt.remove("DE");
+            cache.publish(rebuilt);
+            assertEquals("French Republic", cache.get("FR"));
+            assertNull(cache.get("DE"));
+            assertEquals(1, cache.stream().count());
+            assertEquals(1, cache.unwrap(FrozenDataStore.class).getSize());
+        }
+        finally
+        {
+            manager.close();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+import cache.SimpleCache;
+import cache.SimpleConfiguration;
+import cache.stats.HotKey;
+import cache.stats.MBeans;
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HotKeyTest
+{
+    @Test
+    public void testHotKeys() throws Exception
+    {
+        CacheManager manager = Caching.getCachingProvider()
+                .getCacheManager(URI.create("urn:test:hot-keys"), null, new Properties());
+        SimpleCache<String, Integer> cache = manager.createCache("Test",
+                new SimpleConfiguration<String, Integer>().setHotKeySampling(1, 4)).unwrap(SimpleCache.class);
+
+        for (int i = 0; i < 20000; i++)
+        {
+            cache.put("cold" + i, i);
+            cache.get(i % 2 == 0 ? "hot" : "warm");
+            if (i % 4 == 0)
+                cache.get("hot");
+        }
+
+        List<HotKey<String>> hotKeys = cache.getHotKeys();
+        assertEquals("hot", hotKeys.get(0).getKey());
+        assertEquals("warm", hotKeys.get(1).getKey());
+        assertTrue(hotKeys.get(0).getEstimatedCount() > hotKeys.get(1).getEstimatedCount());
+
+        ObjectName name = MBeans.objectName("CacheHotKeys", cache);
+        String[] keys = (String[]) ManagementFactory.getPlatformMBeanServer().getAttribute(name, "HotKeys");
+        assertEquals("hot", keys[0]);
+
+        manager.close();
+        assertTrue(!ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+
+    @Test
+    public void testReplicaSeesWrites() throws Exception
+    {
+        CacheManager manager = Caching.getCachingProvider()
+                .getCacheManager(URI.create("urn:test:hot-key-replica"), null, new Properties());
+        SimpleCache<String, Integer> cache = manager.createCache("Test",
+                new SimpleConfiguration<String, Integer>().setHotKeySampling(1, 8).setHotKeyReplicaSize(2))
+                .unwrap(SimpleCache.class);
+
+        cache.put("flag", 1);
+        cache.put("other", 0);
+        for (int i = 0; i < 1000; i++)
+            assertEquals(Integer.valueOf(1), cache.get("flag"));
+
+        // the hot set is refreshed once a second, by a read of a key which is not hot
+        Thread.sleep(1100);
+        cache.get("other");
+        assertEquals(Integer.valueOf(1), cache.get("flag"));
+        assertEquals(Integer.valueOf(1), cache.get("flag"));
+
+        cache.put("flag", 2);
+        assertEquals(Integer.valueOf(2), cache.get("flag"));
+        cache.remove("flag");
+        assertEquals(null, cache.get("flag"));
+        manager.close();
+    }
+}
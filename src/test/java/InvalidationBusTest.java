@@ -0,0 +1,288 @@
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.MutableConfiguration;
+
+import javax.cache.configuration.FactoryBuilder;
+import javax.cache.integration.CacheLoader;
+
+import cache.InvalidationBus;
+import cache.SimpleCache;
+import cache.SimpleConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class InvalidationBusTest
+{
+    static final Map<Integer, String> BACKEND = new ConcurrentHashMap<>();
+
+    public static class BackendLoader implements CacheLoader<Integer, String>, Serializable
+    {
+        @Override
+        public String load(Integer key)
+        {
+            return BACKEND.get(key);
+        }
+
+        @Override
+        public Map<Integer, String> loadAll(Iterable<? extends Integer> keys)
+        {
+            Map<Integer, String> values = new HashMap<>();
+            for (Integer key : keys)
+            {
+                String value = load(key);
+                if (value != null)
+                    values.put(key, value);
+            }
+            return values;
+        }
+    }
+
+    /**
+     * Records it was deserialized, as a class with side effects in readObject would act
+     */
+    public static class Gadget implements Serializable
+    {
+        static volatile boolean deserialized;
+
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+        {
+            in.defaultReadObject();
+            deserialized = true;
+        }
+    }
+
+    private File ring;
+
+    private CacheManager first;
+
+    private CacheManager second;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        ring = File.createTempFile("invalidations", ".ring");
+        ring.delete();
+        // two managers on the same file stand for two processes
+        first = newManager("urn:test:bus:first");
+        second = newManager("urn:test:bus:second");
+    }
+
+    @After
+    public void tearDown()
+    {
+        first.close();
+        second.close();
+        ring.delete();
+    }
+
+    @Test
+    public void testWritesInvalidateOtherProcesses() throws InterruptedException
+    {
+        Cache<Integer, String> cache1 = first.createCache("Test", new MutableConfiguration<Integer, String>());
+        Cache<Integer, String> cache2 = second.createCache("Test", new MutableConfiguration<Integer, String>());
+        Cache<Integer, String> other = second.createCache("Other", new MutableConfiguration<Integer, String>());
+
+        // invalidations of a process are applied in order: once the sentinel is gone, key 1 was dropped too
+        cache2.put(100, "sentinel");
+        cache1.put(1, "first");
+        cache1.put(2, "first");
+        cache1.remove(100);
+        awaitTrue(() -> !cache2.containsKey(100));
+
+        other.put(1, "other");
+        cache2.put(1, "second");
+        awaitTrue(() -> !cache1.containsKey(1));
+        assertTrue(cache1.containsKey(2));
+        assertEquals("second", cache2.get(1));
+
+        cache1.remove(1);
+        awaitTrue(() -> !cache2.containsKey(1));
+        assertEquals("other", other.get(1));
+
+        cache2.put(3, "second");
+        cache1.clear();
+        awaitTrue(() -> !cache2.containsKey(3));
+        assertEquals("other", other.get(1));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testTagsAndManyKeys() throws InterruptedException
+    {
+        SimpleCache<Integer, String> cache1 = first.createCache("Test",
+                new MutableConfiguration<Integer, String>()).unwrap(SimpleCache.class);
+        SimpleCache<Integer, String> cache2 = second.createCache("Test",
+                new MutableConfiguration<Integer, String>()).unwrap(SimpleCache.class);
+
+        cache2.put(0, "tagged", "group");
+        cache1.invalidateTag("group");
+        awaitTrue(() -> !cache2.containsKey(0));
+
+        // wraps around the ring many times
+        for (int i = 0; i < 10000; i++)
+            cache2.put(i, "second");
+        for (int i = 0; i < 10000; i++)
+            cache1.put(i, "first");
+        awaitTrue(() -> !cache2.iterator().hasNext());
+    }
+
+    @Test
+    public void testWritesOfOtherProcessesAreNotCachedAsAbsent() throws InterruptedException
+    {
+        BACKEND.clear();
+        Cache<Integer, String> cache1 = first.createCache("Test", readThrough());
+        Cache<Integer, String> cache2 = second.createCache("Test", readThrough());
+
+        assertNull(cache1.get(1));
+        BACKEND.put(1, "second");
+        cache2.put(1, "second");
+        awaitTrue(() -> "second".equals(cache1.get(1)));
+
+        assertNull(cache1.get(2));
+        BACKEND.put(2, "second");
+        cache2.clear();
+        awaitTrue(() -> "second".equals(cache1.get(2)));
+    }
+
+    @Test
+    public void testOnlyKeyTypesAreDeserialized() throws InterruptedException
+    {
+        Cache<Object, String> cache1 = first.createCache("Test", new MutableConfiguration<Object, String>());
+        Cache<Object, String> cache2 = second.createCache("Test", new MutableConfiguration<Object, String>());
+
+        // an untyped cache only takes JDK value keys from the bus: the record is rejected and the caches cleared
+        cache2.put(1, "second");
+        cache1.put(new Gadget(), "first");
+        awaitTrue(() -> !cache2.containsKey(1));
+        assertFalse(Gadget.deserialized);
+    }
+
+    @Test
+    public void testRecordOverwrittenWhileReadIsNotApplied() throws IOException, InterruptedException
+    {
+        File file = File.createTempFile("torn", ".ring");
+        file.delete();
+        List<String> applied = new CopyOnWriteArrayList<>();
+        InvalidationBus bus = new InvalidationBus(file, 4096, 1, new InvalidationBus.Target()
+        {
+            @Override
+            public void invalidateKey(String cacheName, Object key)
+            {
+                applied.add(cacheName + ":" + key);
+            }
+
+            @Override
+            public void invalidateTag(String cacheName, Object tag)
+            {
+                applied.add(cacheName + "#" + tag);
+            }
+
+            @Override
+            public void invalidateAll(String cacheName)
+            {
+                applied.add("all");
+            }
+        }, getClass().getClassLoader());
+
+        // another process publishes a record, and reserves a batch lapping it before the tailer is done
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+        {
+            FileChannel channel = raf.getChannel();
+            byte[] record = keyRecord("Test", 1);
+            channel.write(ByteBuffer.wrap(record), 128);
+            writeLong(channel, 72, 4096 + 2 * record.length);
+            writeLong(channel, 64, record.length);
+            awaitTrue(() -> !applied.isEmpty());
+
+            // once the batch is published, the next records are applied
+            channel.write(ByteBuffer.wrap(keyRecord("Test", 2)), 128 + record.length);
+            writeLong(channel, 72, 2 * record.length);
+            writeLong(channel, 64, 2 * record.length);
+            awaitTrue(() -> applied.size() > 1);
+        }
+        finally
+        {
+            bus.close();
+            file.delete();
+        }
+        assertEquals(Arrays.asList("all", "Test:2"), applied);
+    }
+
+    private static MutableConfiguration<Integer, String> readThrough()
+    {
+        SimpleConfiguration<Integer, String> configuration = new SimpleConfiguration<Integer, String>()
+                .setNegativeCacheTtl(1, TimeUnit.MINUTES);
+        configuration.setReadThrough(true);
+        configuration.setCacheLoaderFactory(FactoryBuilder.factoryOf(BackendLoader.class));
+        return configuration;
+    }
+
+    /**
+     * A key record as InvalidationBus writes it, from an unknown source
+     */
+    private static byte[] keyRecord(String cacheName, Object key) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+        {
+            out.writeObject(key);
+        }
+        byte[] name = cacheName.getBytes(StandardCharsets.UTF_8);
+        byte[] payload = bytes.toByteArray();
+        int length = (24 + name.length + payload.length + 7) & ~7;
+        ByteBuffer record = ByteBuffer.allocate(length);
+        record.putInt(length).putInt(1).putLong(0L).putInt(name.length).putInt(payload.length).put(name).put(payload);
+        return record.array();
+    }
+
+    private static void writeLong(FileChannel channel, long offset, long value) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        buffer.putLong(0, value);
+        channel.write(buffer, offset);
+    }
+
+    private CacheManager newManager(String uri)
+    {
+        Properties properties = new Properties();
+        properties.setProperty("invalidationBus", ring.getPath());
+        properties.setProperty("invalidationBusSize", "65536");
+        return Caching.getCachingProvider().getCacheManager(URI.create(uri), null, properties);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline)
+            Thread.sleep(5);
+        assertTrue(condition.getAsBoolean());
+    }
+}
@@ -0,0 +1,102 @@
+import org.junit.Test;
+import store.LRUDataStore;
+import store.value.ValueHolder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LRUDataStoreTest
+{
+    @Test
+    public void testSetCapacity()
+    {
+        LRUDataStore<Integer, Integer> store = new LRUDataStore<>(8);
+        for (int i = 0; i < 8; i++)
+            store.put(i, i);
+        store.get(0);
+
+        // 0 was just used, 1..5 are the least recently used
+        assertEquals(5, store.setCapacity(3));
+        assertEquals(3, store.getSize());
+        assertNotNull(store.get(0));
+        assertNull(store.get(1));
+        assertNotNull(store.get(7));
+
+        store.setCapacity(8);
+        for (int i = 10; i < 15; i++)
+            store.put(i, i);
+        assertEquals(8, store.getSize());
+        assertNotNull(store.get(0));
+    }
+
+    @Test
+    public void testConditionalWrites()
+    {
+        LRUDataStore<Integer, Integer> store = new LRUDataStore<>(2);
+        store.put(0, 0);
+        ValueHolder<Integer> holder = store.get(0);
+        store.put(1, 1);
+
+        assertFalse(store.remove(1, holder));
+        assertTrue(store.replace(0, holder, 10, null));
+        assertFalse(store.replace(0, holder, 20, null));
+
+        // the replace left 0 the least recently used
+        store.put(2, 2);
+        assertNull(store.get(0));
+
+        ValueHolder<Integer> current = store.get(1);
+        assertTrue(store.remove(1, current));
+        assertFalse(store.remove(1, current));
+        assertEquals(1, store.getSize());
+    }
+
+    @Test
+    public void testConcurrentPutRemove() throws InterruptedException
+    {
+        LRUDataStore<Integer, Integer> store = new LRUDataStore<>(16);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++)
+        {
+            threads.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 100000; i++)
+                {
+                    int key = random.nextInt(32);
+                    switch (random.nextInt(3))
+                    {
+                        case 0: store.put(key, i); break;
+                        case 1: store.remove(key); break;
+                        default: store.get(key);
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads)
+            thread.join();
+
+        // the list and the map must agree: every live key is counted once
+        long live = 0;
+        for (int key = 0; key < 32; key++)
+        {
+            if (store.get(key) != null)
+                live++;
+        }
+        assertEquals(live, store.getSize());
+
+        // evicting through the list must drop every old key
+        for (int key = 100; key < 116; key++)
+            store.put(key, key);
+        assertEquals(16, store.getSize());
+        for (int key = 0; key < 32; key++)
+            assertNull(store.get(key));
+    }
+}
@@ -0,0 +1,198 @@
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import server.MemcachedServer;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class MemcachedServerTest
+{
+    private CacheManager manager;
+
+    private MemcachedServer server;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        manager = Caching.getCachingProvider()
+                .getCacheManager(URI.create("urn:test:memcached-server"), null, new Properties());
+        server = MemcachedServer.create(manager, "memcached", new InetSocketAddress("127.0.0.1", 0), 2);
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        server.close();
+        manager.close();
+    }
+
+    @Test
+    public void testPipelinedText() throws IOException
+    {
+        try (Socket socket = new Socket("127.0.0.1", server.getPort()))
+        {
+            OutputStream out = socket.getOutputStream();
+            out.write(("set a 5 0 3\r\nfoo\r\n"
+                    + "set b 0 0 2 noreply\r\nhi\r\n"
+                    + "get a b c\r\n"
+                    + "delete a\r\n"
+                    + "delete a\r\n"
+                    + "get a\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            String expected = "STORED\r\n"
+                    + "VALUE a 5 3\r\nfoo\r\n"
+                    + "VALUE b 0 2\r\nhi\r\n"
+                    + "END\r\n"
+                    + "DELETED\r\n"
+                    + "NOT_FOUND\r\n"
+                    + "END\r\n";
+            assertEquals(expected, read(socket.getInputStream(), expected.length()));
+        }
+    }
+
+    @Test
+    public void testGetsReturnsCas() throws IOException
+    {
+        try (Socket socket = new Socket("127.0.0.1", server.getPort()))
+        {
+            OutputStream out = socket.getOutputStream();
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            out.write("set a 5 0 3\r\nfoo\r\ngets a\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            assertEquals("STORED", in.readLine());
+            String[] first = in.readLine().split(" ");
+            assertEquals(Arrays.asList("VALUE", "a", "5", "3"), Arrays.asList(first).subList(0, 4));
+            assertEquals(5, first.length);
+            assertEquals("foo", in.readLine());
+            assertEquals("END", in.readLine());
+
+            // a new version of the key has a new CAS value
+            out.write("set a 5 0 3\r\nbar\r\ngets a\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            assertEquals("STORED", in.readLine());
+            String[] second = in.readLine().split(" ");
+            assertNotEquals(first[4], second[4]);
+        }
+    }
+
+    @Test
+    public void testBinary() throws IOException
+    {
+        try (Socket socket = new Socket("127.0.0.1", server.getPort()))
+        {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            byte[] key = "k".getBytes(StandardCharsets.US_ASCII);
+            byte[] value = "value".getBytes(StandardCharsets.US_ASCII);
+
+            // SET with flags 7, then GET
+            writeHeader(out, 0x01, key.length, 8, 8 + key.length + value.length, 1);
+            out.writeInt(7);
+            out.writeInt(0);
+            out.write(key);
+            out.write(value);
+            writeHeader(out, 0x00, key.length, 0, key.length, 2);
+            out.write(key);
+            out.flush();
+
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            ByteBuffer set = ByteBuffer.wrap(readBytes(in, 24));
+            assertEquals(0x81, set.get(0) & 0xff);
+            assertEquals(0, set.getShort(6));
+            assertEquals(1, set.getInt(12));
+
+            ByteBuffer get = ByteBuffer.wrap(readBytes(in, 24));
+            assertEquals(0, get.getShort(6));
+            assertEquals(2, get.getInt(12));
+            assertEquals(4 + value.length, get.getInt(8));
+            assertEquals(7, in.readInt());
+            assertEquals("value", new String(readBytes(in, value.length), StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    public void testClientNotReading() throws Exception
+    {
+        try (Socket socket = new Socket("127.0.0.1", server.getPort()))
+        {
+            OutputStream out = socket.getOutputStream();
+            byte[] value = new byte[64 * 1024];
+            Arrays.fill(value, (byte) 'x');
+            out.write("set big 0 0 65536\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.write(value);
+            out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            assertEquals("STORED\r\n", read(socket.getInputStream(), 8));
+
+            // far more response bytes than the server buffers: it stops reading until the client reads
+            int requests = 400;
+            Thread writer = new Thread(() -> {
+                try
+                {
+                    for (int i = 0; i < requests; i++)
+                        out.write("get big\r\n".getBytes(StandardCharsets.US_ASCII));
+                    out.flush();
+                }
+                catch (IOException e)
+                {
+                    throw new IllegalStateException(e);
+                }
+            });
+            writer.start();
+            Thread.sleep(200);
+
+            String response = "VALUE big 0 65536\r\n" + new String(value, StandardCharsets.US_ASCII) + "\r\nEND\r\n";
+            InputStream in = socket.getInputStream();
+            for (int i = 0; i < requests; i++)
+                assertEquals(response, read(in, response.length()));
+            writer.join();
+        }
+    }
+
+    private static void writeHeader(DataOutputStream out, int opcode, int keyLength, int extLength,
+                                    int bodyLength, int opaque) throws IOException
+    {
+        out.writeByte(0x80);
+        out.writeByte(opcode);
+        out.writeShort(keyLength);
+        out.writeByte(extLength);
+        out.writeByte(0);
+        out.writeShort(0);
+        out.writeInt(bodyLength);
+        out.writeInt(opaque);
+        out.writeLong(0);
+    }
+
+    private static byte[] readBytes(DataInputStream in, int length) throws IOException
+    {
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static String read(InputStream in, int length) throws IOException
+    {
+        return new String(readBytes(new DataInputStream(in), length), StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,96 @@
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+import cache.MemoryBudget;
+import cache.SimpleCache;
+import cache.SimpleCacheManager;
+import cache.SimpleConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import store.LRUDataStore;
+
+import java.net.URI;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MemoryBudgetTest
+{
+    private CacheManager manager;
+
+    @Before
+    public void setUp()
+    {
+        Properties properties = new Properties();
+        properties.setProperty("memoryBudget", "100");
+        manager = Caching.getCachingProvider().getCacheManager(URI.create("urn:test:budget"), null, properties);
+    }
+
+    @After
+    public void tearDown()
+    {
+        manager.close();
+    }
+
+    @Test
+    public void testColdCacheGivesWay() throws InterruptedException
+    {
+        SimpleCache<Integer, String> cold = create("cold", new SimpleConfiguration<>());
+        SimpleCache<Integer, String> hot = create("hot", new SimpleConfiguration<>());
+
+        for (int i = 0; i < 100; i++)
+            cold.put(i, "cold" + i);
+        Thread.sleep(1);
+        cold.get(99);
+        for (int i = 0; i < 80; i++)
+            hot.put(i, "hot" + i);
+
+        MemoryBudget budget = manager.unwrap(SimpleCacheManager.class).getMemoryBudget();
+        assertEquals(100, budget.getUsed());
+        assertEquals(80, size(hot));
+        assertEquals(20, size(cold));
+        // the entry read recently was kept
+        assertNotNull(cold.get(99));
+        assertNull(cold.get(0));
+
+        cold.clear();
+        assertEquals(80, budget.getUsed());
+    }
+
+    @Test
+    public void testShares()
+    {
+        SimpleCache<Integer, String> guarded = create("guarded",
+                new SimpleConfiguration<Integer, String>().setBudgetShare(0.3, 1));
+        SimpleCache<Integer, String> capped = create("capped",
+                new SimpleConfiguration<Integer, String>().setBudgetShare(0, 0.5));
+
+        for (int i = 0; i < 100; i++)
+            guarded.put(i, "value" + i);
+        for (int i = 0; i < 200; i++)
+            capped.put(i, "value" + i);
+
+        assertEquals(50, size(capped));
+        assertEquals(50, size(guarded));
+
+        SimpleCache<Integer, String> other = create("other", new SimpleConfiguration<>());
+        for (int i = 0; i < 100; i++)
+            other.put(i, "value" + i);
+        assertEquals(30, size(guarded));
+        assertTrue(size(guarded) + size(capped) + size(other) <= 100);
+    }
+
+    private SimpleCache<Integer, String> create(String name, SimpleConfiguration<Integer, String> configuration)
+    {
+        return manager.createCache(name, configuration).unwrap(SimpleCache.class);
+    }
+
+    private static long size(SimpleCache<?, ?> cache)
+    {
+        return cache.unwrap(LRUDataStore.class).getSize();
+    }
+}
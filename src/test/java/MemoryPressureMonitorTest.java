@@ -0,0 +1,141 @@
+import cache.MemoryPressureMonitor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import store.LRUDataStore;
+
+import javax.management.Notification;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class MemoryPressureMonitorTest
+{
+    private static final String[] USAGE_ITEMS = {"init", "used", "committed", "max"};
+
+    private static final String[] GC_INFO_ITEMS =
+            {"id", "startTime", "endTime", "duration", "memoryUsageBeforeGc", "memoryUsageAfterGc"};
+
+    private static final String[] NOTIFICATION_ITEMS = {"gcName", "gcAction", "gcCause", "gcInfo"};
+
+    private MemoryPressureMonitor monitor;
+
+    private LRUDataStore<Integer, Integer> store;
+
+    private String tenuredPool;
+
+    private String oldCollector;
+
+    private String youngCollector = "young";
+
+    private long sequence;
+
+    @Before
+    public void setUp()
+    {
+        monitor = new MemoryPressureMonitor(0.85, 0.6, 0.5, 0.1);
+        store = new LRUDataStore<>(100);
+        for (int i = 0; i < 100; i++)
+            store.put(i, i);
+        monitor.register(store);
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+        {
+            if (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported())
+                tenuredPool = pool.getName();
+        }
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            if (Arrays.asList(gc.getMemoryPoolNames()).contains(tenuredPool))
+                oldCollector = gc.getName();
+            else
+                youngCollector = gc.getName();
+        }
+    }
+
+    @After
+    public void tearDown()
+    {
+        monitor.close();
+    }
+
+    @Test
+    public void testOneResizePerCollection() throws OpenDataException
+    {
+        // a collection crossing a usage threshold is only acted upon through its GC notification
+        monitor.handleNotification(new Notification(
+                MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED, this, 1), null);
+        assertEquals(100, store.getCapacity());
+
+        collected(oldCollector, 90);
+        assertEquals(50, store.getCapacity());
+        assertEquals(50, store.getSize());
+
+        // young collections report the same tenured occupancy, as does a stale report
+        for (int i = 0; i < 10; i++)
+            collected(youngCollector, 90);
+        collected(oldCollector, 90);
+        assertEquals(50, store.getCapacity());
+
+        // between the watermarks nothing changes
+        collected(oldCollector, 70);
+        assertEquals(50, store.getCapacity());
+
+        collected(oldCollector, 10);
+        assertEquals(63, store.getCapacity());
+        for (int i = 0; i < 10; i++)
+            collected(youngCollector, 10);
+        assertEquals(63, store.getCapacity());
+    }
+
+    @Test
+    public void testShrinkStopsAtTheFloor() throws OpenDataException
+    {
+        for (int i = 0; i < 10; i++)
+            collected(oldCollector, 90 + i);
+        assertEquals(10, store.getCapacity());
+    }
+
+    /**
+     * Send the GC notification of a collection leaving the tenured pool used percent full
+     */
+    private void collected(String collector, long used) throws OpenDataException
+    {
+        CompositeType usageType = new CompositeType(MemoryUsage.class.getName(), "usage", USAGE_ITEMS,
+                USAGE_ITEMS, new OpenType<?>[] {SimpleType.LONG, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG});
+        CompositeType rowType = new CompositeType("pool", "pool", new String[] {"key", "value"},
+                new String[] {"key", "value"}, new OpenType<?>[] {SimpleType.STRING, usageType});
+        TabularType usagesType = new TabularType("usages", "usages", rowType, new String[] {"key"});
+        TabularDataSupport usages = new TabularDataSupport(usagesType);
+        usages.put(new CompositeDataSupport(rowType, new String[] {"key", "value"}, new Object[] {tenuredPool,
+                new CompositeDataSupport(usageType, USAGE_ITEMS, new Object[] {0L, used, 100L, 100L})}));
+
+        CompositeType gcInfoType = new CompositeType("gcInfo", "gcInfo", GC_INFO_ITEMS, GC_INFO_ITEMS,
+                new OpenType<?>[] {SimpleType.LONG, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG,
+                        usagesType, usagesType});
+        CompositeData gcInfo = new CompositeDataSupport(gcInfoType, GC_INFO_ITEMS,
+                new Object[] {++sequence, 0L, 0L, 0L, usages, usages});
+        CompositeType infoType = new CompositeType("info", "info", NOTIFICATION_ITEMS, NOTIFICATION_ITEMS,
+                new OpenType<?>[] {SimpleType.STRING, SimpleType.STRING, SimpleType.STRING, gcInfoType});
+        CompositeData info = new CompositeDataSupport(infoType, NOTIFICATION_ITEMS,
+                new Object[] {collector, "end of GC", "test", gcInfo});
+
+        Notification notification = new Notification("com.sun.management.gc.notification", this, sequence);
+        notification.setUserData(info);
+        monitor.handleNotification(notification, null);
+    }
+}
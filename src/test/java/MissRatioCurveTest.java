@@ -0,0 +1,109 @@
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.MutableConfiguration;
+
+import cache.SimpleCache;
+import cache.stats.CacheStatistics;
+import cache.stats.MissRatioCurve;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.util.Properties;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MissRatioCurveTest
+{
+    private CacheManager manager;
+
+    @Before
+    public void setUp()
+    {
+        Properties properties = new Properties();
+        properties.setProperty("dataStoreType", "lru");
+        properties.setProperty("capacity", "1000");
+        manager = Caching.getCachingProvider().getCacheManager(URI.create("urn:test:mrc"), null, properties);
+    }
+
+    @After
+    public void tearDown()
+    {
+        manager.close();
+    }
+
+    @Test
+    public void testLoopCurve()
+    {
+        // a loop over n keys only hits in an LRU cache of at least n entries
+        MissRatioCurve exact = new MissRatioCurve(8192, 1);
+        MissRatioCurve sampled = new MissRatioCurve(512);
+        for (int round = 0; round < 20; round++)
+        {
+            for (int i = 0; i < 1000; i++)
+                exact.record(i);
+            for (int i = 0; i < 100000; i++)
+                sampled.record(i);
+        }
+
+        assertEquals(0, exact.hitRatio(500), 0.01);
+        assertEquals(0.95, exact.hitRatio(1100), 0.01);
+
+        assertTrue(sampled.getSampleRate() < 0.01);
+        assertEquals(0, sampled.hitRatio(50000), 0.05);
+        assertEquals(0.95, sampled.hitRatio(120000), 0.05);
+    }
+
+    @Test
+    public void testSmallKeySpaceIsSampled()
+    {
+        // most accesses of a small cache return before taking the lock
+        MissRatioCurve curve = new MissRatioCurve(8192);
+        for (int i = 0; i < 10000; i++)
+            curve.record(i);
+        assertEquals(MissRatioCurve.DEFAULT_SAMPLE_RATE, curve.getSampleRate(), 0.001);
+        assertTrue(curve.getSampledAccesses() < 200);
+    }
+
+    @Test
+    public void testStatistics() throws Exception
+    {
+        SimpleCache<Integer, String> cache = manager.createCache("Test",
+                new MutableConfiguration<Integer, String>()).unwrap(SimpleCache.class);
+        assertNull(cache.getStatistics());
+        manager.enableStatistics("Test", true);
+
+        // the working set is twice the capacity
+        for (int round = 0; round < 10; round++)
+        {
+            for (int i = 0; i < 2000; i++)
+            {
+                if (cache.get(i) == null)
+                    cache.put(i, "value" + i);
+            }
+        }
+
+        CacheStatistics statistics = cache.getStatistics();
+        assertEquals(20000, statistics.getCacheGets());
+        assertEquals(20000, statistics.getCacheMisses());
+        assertArrayEquals(new long[] {250, 500, 1000, 2000, 4000}, statistics.getMissRatioCurveSizes());
+        float[] hitPercentages = statistics.getMissRatioCurveHitPercentages();
+        assertEquals(0, hitPercentages[2], 1);
+        assertEquals(90, hitPercentages[4], 1);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("javax.cache:type=CacheStatistics,CacheManager=\"urn:test:mrc\",Cache=\"Test\"");
+        assertEquals(20000L, server.getAttribute(name, "CacheMisses"));
+
+        manager.enableStatistics("Test", false);
+        assertNull(cache.getStatistics());
+        assertTrue(!server.isRegistered(name));
+    }
+}
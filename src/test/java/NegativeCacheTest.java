@@ -0,0 +1,112 @@
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.FactoryBuilder;
+import javax.cache.integration.CacheLoader;
+
+import cache.SimpleCache;
+import cache.SimpleConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class NegativeCacheTest
+{
+    static final AtomicInteger LOADS = new AtomicInteger();
+
+    /**
+     * Backend knowing the keys 0 to 99
+     */
+    public static class RangeLoader implements CacheLoader<Integer, String>, Serializable
+    {
+        @Override
+        public String load(Integer key)
+        {
+            LOADS.incrementAndGet();
+            return key >= 0 && key < 100 ? "value" + key : null;
+        }
+
+        @Override
+        public Map<Integer, String> loadAll(Iterable<? extends Integer> keys)
+        {
+            Map<Integer, String> values = new HashMap<>();
+            for (Integer key : keys)
+            {
+                String value = load(key);
+                if (value != null)
+                    values.put(key, value);
+            }
+            return values;
+        }
+    }
+
+    private CacheManager manager;
+
+    private SimpleCache<Integer, String> cache;
+
+    @Before
+    public void setUp()
+    {
+        LOADS.set(0);
+        manager = Caching.getCachingProvider()
+                .getCacheManager(URI.create("urn:test:negative"), null, new Properties());
+        SimpleConfiguration<Integer, String> configuration = new SimpleConfiguration<Integer, String>()
+                .setNegativeCacheTtl(1, TimeUnit.MINUTES)
+                .setBloomFilterFalsePositiveRate(0.001);
+        configuration.setReadThrough(true);
+        configuration.setCacheLoaderFactory(FactoryBuilder.factoryOf(RangeLoader.class));
+        Cache<Integer, String> created = manager.createCache("Test", configuration);
+        cache = created.unwrap(SimpleCache.class);
+    }
+
+    @After
+    public void tearDown()
+    {
+        manager.close();
+    }
+
+    @Test
+    public void testNegativeCache()
+    {
+        assertNull(cache.get(500));
+        assertNull(cache.get(500));
+        assertEquals(1, LOADS.get());
+
+        cache.put(500, "new");
+        assertEquals("new", cache.get(500));
+        assertEquals("value5", cache.get(5));
+        assertEquals(2, LOADS.get());
+    }
+
+    @Test
+    public void testBloomFilter()
+    {
+        Set<Integer> ids = new HashSet<>();
+        for (int i = 0; i < 100; i++)
+            ids.add(i);
+        cache.rebuildBloomFilter(ids);
+        assertEquals(100, LOADS.get());
+
+        // enumeration traffic never reaches the loader
+        for (int i = 1000; i < 2000; i++)
+            assertNull(cache.get(i));
+        assertEquals("value42", cache.get(42));
+        assertEquals(100, LOADS.get());
+
+        cache.put(5000, "new");
+        assertEquals("new", cache.get(5000));
+    }
+}
@@ -0,0 +1,147 @@
+import javax.cache.Cache;
+import javax.cache.CacheException;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.MutableConfiguration;
+
+import client.PartitionedCacheProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import server.MemcachedServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PartitionedCacheTest
+{
+    private final List<CacheManager> nodeManagers = new ArrayList<>();
+
+    private final List<MemcachedServer> servers = new ArrayList<>();
+
+    private CacheManager manager;
+
+    private String nodes;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        StringBuilder nodes = new StringBuilder();
+        for (int i = 0; i < 3; i++)
+        {
+            CacheManager nodeManager = Caching.getCachingProvider()
+                    .getCacheManager(URI.create("urn:test:node-" + i), null, new Properties());
+            MemcachedServer server = MemcachedServer.create(nodeManager, "memcached",
+                    new InetSocketAddress("127.0.0.1", 0), 1);
+            server.start();
+            nodeManagers.add(nodeManager);
+            servers.add(server);
+            nodes.append(i == 0 ? "" : ",").append("127.0.0.1:").append(server.getPort());
+        }
+
+        Properties properties = new Properties();
+        this.nodes = nodes.toString();
+        properties.setProperty("nodes", this.nodes);
+        manager = new PartitionedCacheProvider().getCacheManager(URI.create("urn:test:partitioned"), null, properties);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        manager.close();
+        for (MemcachedServer server : servers)
+            server.close();
+        nodeManagers.forEach(CacheManager::close);
+    }
+
+    @Test
+    public void testPartitioned()
+    {
+        Cache<String, Integer> cache = manager.createCache("Test", new MutableConfiguration<>());
+
+        Map<String, Integer> entries = new HashMap<>();
+        for (int i = 0; i < 300; i++)
+            entries.put("key" + i, i);
+        cache.putAll(entries);
+        cache.put("single", -1);
+
+        assertEquals(Integer.valueOf(42), cache.get("key42"));
+        assertEquals(Integer.valueOf(-1), cache.get("single"));
+        assertEquals(entries, cache.getAll(entries.keySet()));
+
+        // every node owns a share of the keys
+        for (MemcachedServer server : servers)
+        {
+            int owned = 0;
+            for (Cache.Entry<?, ?> ignored : server.getCache())
+                owned++;
+            assertTrue("node owns " + owned + " keys", owned > 30);
+        }
+
+        Set<String> removed = new HashSet<>();
+        for (int i = 0; i < 100; i++)
+            removed.add("key" + i);
+        cache.removeAll(removed);
+        assertNull(cache.get("key1"));
+        assertEquals(Integer.valueOf(150), cache.get("key150"));
+
+        assertTrue(cache.remove("single"));
+        assertFalse(cache.remove("single"));
+
+        cache.clear();
+        assertNull(cache.get("key150"));
+    }
+
+    @Test
+    public void testClearOnlyDropsTheCache()
+    {
+        Properties properties = new Properties();
+        properties.setProperty("nodes", nodes);
+        properties.setProperty("generationRefreshMillis", "0");
+        CacheManager otherClient = new PartitionedCacheProvider()
+                .getCacheManager(URI.create("urn:test:partitioned-other"), null, properties);
+        try
+        {
+            Cache<String, Integer> cache = manager.createCache("Test", new MutableConfiguration<>());
+            Cache<String, Integer> other = manager.createCache("Other", new MutableConfiguration<>());
+            Cache<String, Integer> sameCache = otherClient.createCache("Test", new MutableConfiguration<>());
+            cache.put("a", 1);
+            other.put("a", 2);
+            assertEquals(Integer.valueOf(1), sameCache.get("a"));
+
+            cache.clear();
+            assertNull(cache.get("a"));
+            assertNull(sameCache.get("a"));
+            assertEquals(Integer.valueOf(2), other.get("a"));
+
+            sameCache.put("b", 3);
+            assertEquals(Integer.valueOf(3), sameCache.get("b"));
+        }
+        finally
+        {
+            otherClient.close();
+        }
+    }
+
+    @Test(expected = CacheException.class)
+    public void testOnlyValueTypesAreDeserialized()
+    {
+        Cache<String, Object> cache = manager.createCache("Test", new MutableConfiguration<>());
+        cache.put("list", new ArrayList<>(Arrays.asList(1, 2)));
+        cache.get("list");
+    }
+}
@@ -0,0 +1,88 @@
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.FactoryBuilder;
+import javax.cache.integration.CacheLoader;
+
+import cache.SimpleConfiguration;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RefreshAheadTest
+{
+    static final AtomicInteger LOADS = new AtomicInteger();
+
+    static volatile boolean failing;
+
+    public static class VersionLoader implements CacheLoader<String, Integer>, Serializable
+    {
+        @Override
+        public Integer load(String key)
+        {
+            if (failing)
+                throw new IllegalStateException("backend down");
+            return LOADS.incrementAndGet();
+        }
+
+        @Override
+        public Map<String, Integer> loadAll(Iterable<? extends String> keys)
+        {
+            Map<String, Integer> values = new HashMap<>();
+            keys.forEach((key) -> values.put(key, load(key)));
+            return values;
+        }
+    }
+
+    @Test
+    public void testRefreshAfterWrite() throws InterruptedException
+    {
+        CacheManager manager = Caching.getCachingProvider()
+                .getCacheManager(URI.create("urn:test:refresh"), null, new Properties());
+        SimpleConfiguration<String, Integer> configuration = new SimpleConfiguration<String, Integer>()
+                .setRefreshAfterWrite(50, TimeUnit.MILLISECONDS);
+        configuration.setReadThrough(true);
+        configuration.setCacheLoaderFactory(FactoryBuilder.factoryOf(VersionLoader.class));
+        Cache<String, Integer> cache = manager.createCache("Test", configuration);
+
+        // read-through on a miss
+        assertEquals(Integer.valueOf(1), cache.get("price"));
+        // fresh, no reload
+        assertEquals(Integer.valueOf(1), cache.get("price"));
+        assertEquals(1, LOADS.get());
+
+        Thread.sleep(80);
+        // stale: served immediately, reloaded in the background
+        assertEquals(Integer.valueOf(1), cache.get("price"));
+        assertTrue(waitFor(() -> cache.get("price") == 2));
+
+        // a failing reload keeps the stale value
+        failing = true;
+        Thread.sleep(80);
+        assertEquals(Integer.valueOf(2), cache.get("price"));
+        Thread.sleep(50);
+        assertEquals(Integer.valueOf(2), cache.get("price"));
+        failing = false;
+        manager.close();
+    }
+
+    private static boolean waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException
+    {
+        for (int i = 0; i < 100; i++)
+        {
+            if (condition.getAsBoolean())
+                return true;
+            Thread.sleep(10);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,131 @@
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.MutableConfiguration;
+
+import cache.SimpleCache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SecondaryIndexTest
+{
+    static class User
+    {
+        final String name;
+
+        final String city;
+
+        User(String name, String city)
+        {
+            this.name = name;
+            this.city = city;
+        }
+    }
+
+    private CacheManager manager;
+
+    private SimpleCache<Integer, User> cache;
+
+    @Before
+    public void setUp()
+    {
+        Properties properties = new Properties();
+        properties.setProperty("dataStoreType", "lru");
+        properties.setProperty("capacity", "100");
+        manager = Caching.getCachingProvider().getCacheManager(URI.create("urn:test:index"), null, properties);
+        cache = manager.createCache("Users", new MutableConfiguration<Integer, User>()).unwrap(SimpleCache.class);
+    }
+
+    @After
+    public void tearDown()
+    {
+        manager.close();
+    }
+
+    @Test
+    public void testFindByIndex()
+    {
+        for (int i = 0; i < 50; i++)
+            cache.put(i, new User("user" + i, i % 2 == 0 ? "Paris" : "Lyon"));
+        cache.addIndex("city", (user) -> user.city);
+
+        assertEquals(25, cache.findByIndex("city", "Paris").size());
+
+        cache.put(50, new User("user50", "Paris"));
+        cache.put(1, new User("user1", "Paris"));
+        cache.remove(0);
+        Map<Integer, User> paris = cache.findByIndex("city", "Paris");
+        assertEquals(26, paris.size());
+        assertEquals("user1", paris.get(1).name);
+        assertEquals(24, cache.findByIndex("city", "Lyon").size());
+        assertTrue(cache.findByIndex("city", "Nice").isEmpty());
+    }
+
+    @Test
+    public void testEvictedKeysAreNotFound()
+    {
+        cache.addIndex("city", (user) -> user.city);
+        for (int i = 0; i < 100; i++)
+            cache.put(i, new User("user" + i, "Paris"));
+        // evicts the Paris users
+        for (int i = 100; i < 200; i++)
+            cache.put(i, new User("user" + i, "Lyon"));
+
+        assertTrue(cache.findByIndex("city", "Paris").isEmpty());
+        assertEquals(100, cache.findByIndex("city", "Lyon").size());
+
+        cache.clear();
+        assertTrue(cache.findByIndex("city", "Lyon").isEmpty());
+    }
+
+    @Test
+    public void testConcurrentPutsKeepTheIndex() throws InterruptedException
+    {
+        cache.addIndex("city", (user) -> user.city);
+        String[] cities = {"Paris", "Lyon", "Nice"};
+        Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; t++)
+        {
+            int seed = t;
+            writers[t] = new Thread(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 20000; i++)
+                {
+                    int key = random.nextInt(10);
+                    cache.put(key, new User("user" + key, cities[random.nextInt(cities.length)]));
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread writer : writers)
+            writer.join();
+
+        // every key is found under the city of its last value
+        for (int key = 0; key < 10; key++)
+            assertTrue(cache.findByIndex("city", cache.get(key).city).containsKey(key));
+    }
+
+    @Test
+    public void testFindDoesNotChangeEvictionOrder()
+    {
+        cache.addIndex("city", (user) -> user.city);
+        for (int i = 0; i < 100; i++)
+            cache.put(i, new User("user" + i, "Paris"));
+        cache.get(0);
+
+        assertEquals(100, cache.findByIndex("city", "Paris").size());
+        // 1 is still the least recently used
+        cache.put(100, new User("user100", "Lyon"));
+        assertTrue(cache.containsKey(0));
+        assertFalse(cache.containsKey(1));
+    }
+}
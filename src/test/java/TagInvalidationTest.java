@@ -0,0 +1,84 @@
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.MutableConfiguration;
+
+import cache.SimpleCache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import store.LRUDataStore;
+
+import java.net.URI;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TagInvalidationTest
+{
+    private CacheManager manager;
+
+    private SimpleCache<Integer, String> cache;
+
+    @Before
+    public void setUp()
+    {
+        Properties properties = new Properties();
+        properties.setProperty("dataStoreType", "lru");
+        properties.setProperty("capacity", "100000");
+        manager = Caching.getCachingProvider().getCacheManager(URI.create("urn:test:tags"), null, properties);
+        cache = manager.createCache("Test", new MutableConfiguration<Integer, String>()).unwrap(SimpleCache.class);
+    }
+
+    @After
+    public void tearDown()
+    {
+        manager.close();
+    }
+
+    @Test
+    public void testInvalidateTag() throws InterruptedException
+    {
+        for (int i = 0; i < 10000; i++)
+            cache.put(i, "value" + i, "tenant:" + (i % 2), "all");
+        cache.put(-1, "untagged");
+
+        cache.invalidateTag("tenant:0");
+        assertNull(cache.get(0));
+        assertFalse(cache.containsKey(2));
+        assertEquals("value1", cache.get(1));
+        assertEquals(5001, cache.stream().count());
+
+        // entries put after the invalidation are live
+        cache.put(0, "again", "tenant:0");
+        assertEquals("again", cache.get(0));
+
+        // the sweep reclaims the stale entries in the background
+        LRUDataStore<?, ?> store = cache.unwrap(LRUDataStore.class);
+        for (int i = 0; i < 100 && store.getSize() > 5002; i++)
+            Thread.sleep(50);
+        assertEquals(5002, store.getSize());
+
+        cache.invalidateTag("all");
+        assertNull(cache.get(1));
+        assertEquals("again", cache.get(0));
+        assertEquals("untagged", cache.get(-1));
+    }
+
+    @Test
+    public void testClearResetsSize()
+    {
+        LRUDataStore<Integer, String> store = new LRUDataStore<>(10);
+        for (int i = 0; i < 10; i++)
+            store.put(i, "value" + i);
+        store.clear();
+        assertEquals(0, store.getSize());
+
+        for (int i = 0; i < 10; i++)
+            store.put(i, "value" + i);
+        assertEquals(10, store.getSize());
+        assertTrue(store.get(0) != null);
+    }
+}
@@ -0,0 +1,235 @@
+package bench;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.MutableConfiguration;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop latency harness for the javax.cache API of SimpleCache: every thread issues operations
+ * on a fixed schedule (target rate / threads) and measures each one from its scheduled start, so a
+ * stalled operation charges the wait to the operations queued behind it instead of silently lowering
+ * the rate (coordinated omission). Latencies go to per-thread LatencyHistograms, reported per
+ * operation type for every thread count and capacity.
+ *
+ * A key space larger than the capacity keeps bounded stores evicting during the run.
+ *
+ * Usage: CacheLoadHarness [dataStoreType] [capacities] [threads] [rate] [seconds] [read:write:bulk] [keys] [bulkSize]
+ * e.g. CacheLoadHarness lru 10000,100000 1,2,4,8 200000 10 80:15:5 200000 16
+ */
+public class CacheLoadHarness
+{
+    private static final String[] OPERATIONS = { "read", "write", "bulk" };
+
+    private static final long SPIN_NANOS = 50_000;
+
+    public static void main(String[] args) throws Exception
+    {
+        String dataStoreType = arg(args, 0, "lru");
+        long[] capacities = Arrays.stream(arg(args, 1, "10000,100000").split(",")).mapToLong(Long::parseLong).toArray();
+        int[] threadCounts = Arrays.stream(arg(args, 2, "1,2,4,8").split(",")).mapToInt(Integer::parseInt).toArray();
+        double rate = Double.parseDouble(arg(args, 3, "100000"));
+        int seconds = Integer.parseInt(arg(args, 4, "10"));
+        int[] mix = Arrays.stream(arg(args, 5, "80:15:5").split(":")).mapToInt(Integer::parseInt).toArray();
+        int keys = Integer.parseInt(arg(args, 6, "200000"));
+        int bulkSize = Integer.parseInt(arg(args, 7, "16"));
+        if (mix.length != OPERATIONS.length)
+            throw new IllegalArgumentException("mix should be read:write:bulk, was " + arg(args, 5, null));
+
+        System.out.printf("store=%s rate=%.0f/s seconds=%d mix=%s keys=%d bulkSize=%d%n",
+                dataStoreType, rate, seconds, arg(args, 5, "80:15:5"), keys, bulkSize);
+        System.out.printf("%-10s %-8s %-6s %10s %12s %10s %10s %10s %10s%n",
+                "capacity", "threads", "op", "count", "ops/s", "p50 us", "p99 us", "p99.9 us", "max us");
+
+        int run = 0;
+        for (long capacity : capacities)
+        {
+            for (int threads : threadCounts)
+            {
+                Properties properties = new Properties();
+                properties.setProperty("dataStoreType", dataStoreType);
+                properties.setProperty("capacity", String.valueOf(capacity));
+                CacheManager manager = Caching.getCachingProvider()
+                        .getCacheManager(URI.create("urn:bench:load:" + run++), null, properties);
+                try
+                {
+                    Cache<Integer, String> cache = manager.createCache("load",
+                            new MutableConfiguration<Integer, String>());
+                    for (int key = 0; key < Math.min(keys, capacity); key++)
+                        cache.put(key, "value" + key);
+
+                    Workload workload = new Workload(cache, mix, keys, bulkSize);
+                    // warm up, not reported
+                    run(workload, threads, rate, Math.max(1, seconds / 5));
+                    LatencyHistogram[] histograms = run(workload, threads, rate, seconds);
+                    for (int op = 0; op < OPERATIONS.length; op++)
+                        report(capacity, threads, OPERATIONS[op], histograms[op], seconds);
+                }
+                finally
+                {
+                    manager.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the merged histogram of every operation type
+     */
+    private static LatencyHistogram[] run(Workload workload, int threads, double rate, int seconds)
+            throws InterruptedException
+    {
+        long interval = (long) (1_000_000_000L * threads / rate);
+        LatencyHistogram[][] histograms = new LatencyHistogram[threads][];
+        CountDownLatch done = new CountDownLatch(threads);
+        long start = System.nanoTime() + 10_000_000L;
+        long end = start + seconds * 1_000_000_000L;
+        for (int t = 0; t < threads; t++)
+        {
+            LatencyHistogram[] recorded = newHistograms();
+            histograms[t] = recorded;
+            // threads are staggered over one interval
+            long first = start + interval * t / threads;
+            Thread thread = new Thread(() -> {
+                try
+                {
+                    for (long scheduled = first; scheduled < end; scheduled += interval)
+                    {
+                        waitUntil(scheduled);
+                        int op = workload.execute();
+                        recorded[op].record(System.nanoTime() - scheduled);
+                    }
+                }
+                finally
+                {
+                    done.countDown();
+                }
+            }, "load-" + t);
+            thread.start();
+        }
+        done.await();
+
+        LatencyHistogram[] merged = newHistograms();
+        for (LatencyHistogram[] recorded : histograms)
+        {
+            for (int op = 0; op < merged.length; op++)
+                merged[op].add(recorded[op]);
+        }
+        return merged;
+    }
+
+    /**
+     * Park while far from the scheduled time, spin the last few microseconds
+     */
+    private static void waitUntil(long scheduled)
+    {
+        long remaining;
+        while ((remaining = scheduled - System.nanoTime()) > 0)
+        {
+            if (remaining > SPIN_NANOS)
+                LockSupport.parkNanos(remaining - SPIN_NANOS);
+        }
+    }
+
+    private static LatencyHistogram[] newHistograms()
+    {
+        LatencyHistogram[] histograms = new LatencyHistogram[OPERATIONS.length];
+        for (int op = 0; op < histograms.length; op++)
+            histograms[op] = new LatencyHistogram();
+        return histograms;
+    }
+
+    private static void report(long capacity, int threads, String op, LatencyHistogram histogram, int seconds)
+    {
+        if (histogram.getCount() == 0)
+            return;
+
+        System.out.printf("%-10d %-8d %-6s %10d %12d %10.1f %10.1f %10.1f %10.1f%n",
+                capacity, threads, op, histogram.getCount(), histogram.getCount() / seconds,
+                histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0, histogram.getMax() / 1000.0);
+    }
+
+    private static String arg(String[] args, int index, String defaultValue)
+    {
+        return args.length > index ? args[index] : defaultValue;
+    }
+
+    /**
+     * Uniformly random keys; bulk operations alternate between getAll and putAll
+     */
+    private static class Workload
+    {
+        private final Cache<Integer, String> cache;
+
+        private final int readThreshold;
+
+        private final int writeThreshold;
+
+        private final int total;
+
+        private final int keys;
+
+        private final int bulkSize;
+
+        Workload(Cache<Integer, String> cache, int[] mix, int keys, int bulkSize)
+        {
+            this.cache = cache;
+            this.readThreshold = mix[0];
+            this.writeThreshold = mix[0] + mix[1];
+            this.total = mix[0] + mix[1] + mix[2];
+            this.keys = keys;
+            this.bulkSize = bulkSize;
+        }
+
+        /**
+         * @return the index of the operation type executed
+         */
+        int execute()
+        {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int draw = random.nextInt(total);
+            int key = random.nextInt(keys);
+            if (draw < readThreshold)
+            {
+                cache.get(key);
+                return 0;
+            }
+            if (draw < writeThreshold)
+            {
+                cache.put(key, "value" + key);
+                return 1;
+            }
+
+            if (random.nextBoolean())
+            {
+                Set<Integer> bulk = new HashSet<>();
+                for (int i = 0; i < bulkSize; i++)
+                    bulk.add(random.nextInt(keys));
+                cache.getAll(bulk);
+            }
+            else
+            {
+                Map<Integer, String> bulk = new HashMap<>();
+                for (int i = 0; i < bulkSize; i++)
+                {
+                    int bulkKey = random.nextInt(keys);
+                    bulk.put(bulkKey, "value" + bulkKey);
+                }
+                cache.putAll(bulk);
+            }
+            return 2;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package bench;
+
+/**
+ * Log-linear latency histogram in the style of HdrHistogram: values below 128 are exact, larger
+ * ones fall in one of 64 linear buckets per power of two, under 1.6% relative error whatever the
+ * magnitude. Recording is an array increment; not thread safe, keep one per thread and merge them.
+ */
+public class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 7;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+
+    private final long[] counts = new long[SUB_BUCKETS + (64 - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS];
+
+    private long count;
+
+    private long max;
+
+    public void record(long value)
+    {
+        if (value < 0)
+            value = 0;
+        counts[index(value)]++;
+        count++;
+        if (value > max)
+            max = value;
+    }
+
+    public void add(LatencyHistogram other)
+    {
+        for (int i = 0; i < counts.length; i++)
+            counts[i] += other.counts[i];
+        count += other.count;
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount()
+    {
+        return count;
+    }
+
+    public long getMax()
+    {
+        return max;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the highest value of the bucket holding the percentile, at most the maximum recorded
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        if (count == 0)
+            return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++)
+        {
+            seen += counts[i];
+            if (seen >= rank)
+                return Math.min(highestValue(i), max);
+        }
+        return max;
+    }
+
+    static int index(long value)
+    {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        int subBucket = (int) (value >>> shift);
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + subBucket - HALF_SUB_BUCKETS;
+    }
+
+    static long highestValue(int index)
+    {
+        if (index < SUB_BUCKETS)
+            return index;
+
+        int shift = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long subBucket = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
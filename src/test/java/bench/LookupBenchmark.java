@@ -0,0 +1,119 @@
+package bench;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.configuration.MutableConfiguration;
+
+import cache.CacheHandle;
+import cache.SimpleCacheManager;
+import cache.SimpleCacheProvider;
+
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrent stress of the lookup path: every thread picks a random manager and cache and looks
+ * them up, through provider.getCacheManager plus manager.getCache, then through kept CacheHandles.
+ * Throughput per thread should stay flat as threads, managers and caches grow, up to the number of cores.
+ *
+ * Usage: LookupBenchmark [maxThreads] [managers] [caches] [seconds]
+ */
+public class LookupBenchmark
+{
+    public static void main(String[] args) throws Exception
+    {
+        int maxThreads = Integer.parseInt(arg(args, 0, String.valueOf(Runtime.getRuntime().availableProcessors())));
+        int managers = Integer.parseInt(arg(args, 1, "16"));
+        int caches = Integer.parseInt(arg(args, 2, "64"));
+        int seconds = Integer.parseInt(arg(args, 3, "2"));
+
+        SimpleCacheProvider provider = new SimpleCacheProvider();
+        URI[] uris = new URI[managers];
+        String[] names = new String[caches];
+        @SuppressWarnings("unchecked")
+        CacheHandle<String, String>[][] handles = new CacheHandle[managers][caches];
+        for (int c = 0; c < caches; c++)
+            names[c] = "cache" + c;
+        for (int m = 0; m < managers; m++)
+        {
+            uris[m] = URI.create("urn:bench:lookup:" + m);
+            CacheManager manager = provider.getCacheManager(uris[m], null);
+            for (int c = 0; c < caches; c++)
+            {
+                manager.createCache(names[c], new MutableConfiguration<String, String>()
+                        .setTypes(String.class, String.class));
+                handles[m][c] = manager.unwrap(SimpleCacheManager.class)
+                        .getCacheHandle(names[c], String.class, String.class);
+            }
+        }
+
+        System.out.printf("%-8s %16s %16s %16s %16s%n",
+                "threads", "lookup ops/s", "per thread", "handle ops/s", "per thread");
+        for (int threads = 1; threads <= maxThreads; threads *= 2)
+        {
+            long lookups = run(threads, seconds, () -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                CacheManager manager = provider.getCacheManager(uris[random.nextInt(managers)], null);
+                return manager.getCache(names[random.nextInt(caches)], String.class, String.class);
+            });
+            long handled = run(threads, seconds, () -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                return handles[random.nextInt(managers)][random.nextInt(caches)].get();
+            });
+            System.out.printf("%-8d %16d %16d %16d %16d%n", threads, lookups / seconds, lookups / seconds / threads,
+                    handled / seconds, handled / seconds / threads);
+        }
+        provider.close();
+    }
+
+    private static long run(int threads, int seconds, Lookup lookup) throws InterruptedException
+    {
+        AtomicLong operations = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++)
+        {
+            new Thread(() -> {
+                try
+                {
+                    start.await();
+                    long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+                    long count = 0;
+                    while (System.nanoTime() < deadline)
+                    {
+                        for (int i = 0; i < 1024; i++)
+                        {
+                            if (lookup.find() == null)
+                                throw new IllegalStateException("cache not found");
+                        }
+                        count += 1024;
+                    }
+                    operations.addAndGet(count);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                finally
+                {
+                    done.countDown();
+                }
+            }).start();
+        }
+        start.countDown();
+        done.await();
+        return operations.get();
+    }
+
+    private interface Lookup
+    {
+        Cache<String, String> find();
+    }
+
+    private static String arg(String[] args, int index, String defaultValue)
+    {
+        return args.length > index ? args[index] : defaultValue;
+    }
+}
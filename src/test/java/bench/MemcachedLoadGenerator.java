@@ -0,0 +1,191 @@
+package bench;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+import server.MemcachedServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop throughput generator for {@link MemcachedServer}: every thread owns one connection
+ * and keeps a batch of pipelined text requests in flight.
+ *
+ * Usage: MemcachedLoadGenerator [host|embedded] [port] [threads] [seconds] [pipeline] [keys] [valueSize] [getRatio]
+ */
+public class MemcachedLoadGenerator
+{
+    public static void main(String[] args) throws Exception
+    {
+        String host = arg(args, 0, "embedded");
+        int port = Integer.parseInt(arg(args, 1, "11211"));
+        int threads = Integer.parseInt(arg(args, 2, "8"));
+        int seconds = Integer.parseInt(arg(args, 3, "10"));
+        int pipeline = Integer.parseInt(arg(args, 4, "64"));
+        int keys = Integer.parseInt(arg(args, 5, "100000"));
+        int valueSize = Integer.parseInt(arg(args, 6, "32"));
+        double getRatio = Double.parseDouble(arg(args, 7, "0.9"));
+
+        MemcachedServer server = null;
+        CacheManager manager = null;
+        if ("embedded".equals(host))
+        {
+            manager = Caching.getCachingProvider().getCacheManager(null, null, new Properties());
+            server = MemcachedServer.create(manager, "memcached", new InetSocketAddress("127.0.0.1", 0),
+                    Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+            server.start();
+            host = "127.0.0.1";
+            port = server.getPort();
+        }
+
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        byte[] value = new byte[valueSize];
+        java.util.Arrays.fill(value, (byte) 'x');
+
+        // populate so that gets hit
+        try (Worker loader = new Worker(address, pipeline, keys, value, 0.0))
+        {
+            for (int i = 0; i < keys; i += pipeline)
+                loader.batch();
+        }
+
+        AtomicLong operations = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(threads);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        for (int t = 0; t < threads; t++)
+        {
+            Worker worker = new Worker(address, pipeline, keys, value, getRatio);
+            new Thread(() -> {
+                try
+                {
+                    long count = 0;
+                    while (System.nanoTime() < deadline)
+                        count += worker.batch();
+                    operations.addAndGet(count);
+                    worker.close();
+                }
+                catch (IOException e)
+                {
+                    e.printStackTrace();
+                }
+                finally
+                {
+                    done.countDown();
+                }
+            }, "load-" + t).start();
+        }
+        done.await();
+
+        System.out.printf("%d threads, pipeline %d, %d keys, %d byte values, %.0f%% gets: %.0f ops/sec%n",
+                threads, pipeline, keys, valueSize, getRatio * 100, operations.get() / (double) seconds);
+
+        if (server != null)
+        {
+            server.close();
+            manager.close();
+        }
+    }
+
+    private static String arg(String[] args, int index, String defaultValue)
+    {
+        return args.length > index ? args[index] : defaultValue;
+    }
+
+    private static class Worker implements AutoCloseable
+    {
+        private final SocketChannel channel;
+
+        private final int pipeline;
+
+        private final int keys;
+
+        private final byte[] value;
+
+        private final double getRatio;
+
+        private final ByteBuffer request = ByteBuffer.allocateDirect(1024 * 1024);
+
+        private final ByteBuffer response = ByteBuffer.allocateDirect(1024 * 1024);
+
+        private int nextKey;
+
+        private boolean atLineStart = true;
+
+        Worker(InetSocketAddress address, int pipeline, int keys, byte[] value, double getRatio) throws IOException
+        {
+            this.channel = SocketChannel.open(address);
+            this.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            this.pipeline = pipeline;
+            this.keys = keys;
+            this.value = value;
+            this.getRatio = getRatio;
+        }
+
+        /**
+         * Send a pipelined batch and wait for all its responses
+         * @return number of completed operations
+         */
+        int batch() throws IOException
+        {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            request.clear();
+            for (int i = 0; i < pipeline; i++)
+            {
+                String key = "key:" + (getRatio == 0.0 ? nextKey++ % keys : random.nextInt(keys));
+                if (random.nextDouble() < getRatio)
+                    request.put(("get " + key + "\r\n").getBytes(StandardCharsets.US_ASCII));
+                else
+                {
+                    request.put(("set " + key + " 0 0 " + value.length + "\r\n").getBytes(StandardCharsets.US_ASCII));
+                    request.put(value).put((byte) '\r').put((byte) '\n');
+                }
+            }
+            request.flip();
+            while (request.hasRemaining())
+                channel.write(request);
+
+            int pending = pipeline;
+            while (pending > 0)
+            {
+                response.clear();
+                if (channel.read(response) < 0)
+                    throw new IOException("connection closed by server");
+                response.flip();
+                pending -= countResponses();
+            }
+            return pipeline;
+        }
+
+        /**
+         * Every get ends with an END line and every set with a STORED line,
+         * VALUE lines and data lines (made of 'x') are skipped.
+         */
+        private int countResponses()
+        {
+            int count = 0;
+            while (response.hasRemaining())
+            {
+                byte b = response.get();
+                if (atLineStart && (b == 'E' || b == 'S'))
+                    count++;
+                atLineStart = b == '\n';
+            }
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            channel.close();
+        }
+    }
+}